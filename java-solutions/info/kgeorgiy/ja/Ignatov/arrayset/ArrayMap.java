@@ -0,0 +1,271 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable navigable map over parallel lists of sorted keys and their values.
+ * The keys are an {@link ArraySet}, so every view, including the descending one, is a range of the same lists,
+ * created in constant time without copying. A value is found by the position of its key in the backing list.
+ *
+ * @author Ignatov Nikolay
+ */
+public class ArrayMap<K extends Comparable<K>, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+    private final ArraySet<K> keys;
+    // aligned with the backing list of the keys, not with the positions of the view
+    private final List<V> values;
+
+    public ArrayMap() {
+        keys = new ArraySet<>();
+        values = List.of();
+    }
+
+    private ArrayMap(final ArraySet<K> keys, final List<V> values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * Copies the map. The entries are sorted by the keys unless the map is a sorted one in the same order,
+     * of the keys equal by the comparator the first one is kept with the last value.
+     *
+     * @param map        map to copy
+     * @param comparator order of the keys, {@code null} for the natural order
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayMap(final Map<? extends K, ? extends V> map, final Comparator<? super K> comparator) {
+        final Comparator<? super K> order = comparator == null ? Comparator.naturalOrder() : comparator;
+        final Map.Entry<K, V>[] entries = (Map.Entry<K, V>[]) new Map.Entry<?, ?>[map.size()];
+        int length = 0;
+        for (final Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            entries[length++] = new SimpleImmutableEntry<>(entry.getKey(), entry.getValue());
+        }
+        final boolean sameOrder = map instanceof SortedMap<?, ?> sorted
+                && order.equals(sorted.comparator() == null ? Comparator.naturalOrder() : sorted.comparator());
+        if (!sameOrder) {
+            // the sort is stable, so the last of the equal keys keeps the last value
+            Arrays.sort(entries, 0, length, Map.Entry.comparingByKey(order));
+        }
+
+        final Object[] keyArray = new Object[length];
+        final Object[] valueArray = new Object[length];
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            if (size > 0 && order.compare((K) keyArray[size - 1], entries[i].getKey()) == 0) {
+                valueArray[size - 1] = entries[i].getValue();
+            } else {
+                keyArray[size] = entries[i].getKey();
+                valueArray[size++] = entries[i].getValue();
+            }
+        }
+        keys = ArraySet.<K>ofSorted(asList(Arrays.copyOf(keyArray, size)), comparator);
+        values = asList(Arrays.copyOf(valueArray, size));
+    }
+
+    public ArrayMap(final Map<? extends K, ? extends V> map) {
+        this(map, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> asList(final Object[] array) {
+        return (List<T>) Arrays.asList(array);
+    }
+
+    private V valueAt(final int position) {
+        return values.get(keys.backingIndex(position));
+    }
+
+    private Map.Entry<K, V> entryAt(final int position) {
+        return new SimpleImmutableEntry<>(keys.get(position), valueAt(position));
+    }
+
+    private Map.Entry<K, V> entryOf(final K key) {
+        return key == null ? null : new SimpleImmutableEntry<>(key, valueAt(keys.indexOf(key)));
+    }
+
+    private ArrayMap<K, V> view(final ArraySet<K> range) {
+        return new ArrayMap<>(range, values);
+    }
+
+    @Override
+    public int size() {
+        return keys.size();
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return keys.contains(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(final Object key) {
+        final int position = keys.indexOf((K) key);
+        return position < 0 ? null : valueAt(position);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new Iterator<>() {
+                    private int position;
+
+                    @Override
+                    public boolean hasNext() {
+                        return position < keys.size();
+                    }
+
+                    @Override
+                    public Map.Entry<K, V> next() {
+                        if (position >= keys.size()) {
+                            throw new NoSuchElementException("no more entries");
+                        }
+                        return entryAt(position++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean contains(final Object o) {
+                if (!(o instanceof Map.Entry<?, ?> entry)) {
+                    return false;
+                }
+                final int position = keys.indexOf((K) entry.getKey());
+                return position >= 0 && Objects.equals(valueAt(position), entry.getValue());
+            }
+        };
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return keys.comparator();
+    }
+
+    @Override
+    public K firstKey() throws NoSuchElementException {
+        return keys.first();
+    }
+
+    @Override
+    public K lastKey() throws NoSuchElementException {
+        return keys.last();
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return isEmpty() ? null : entryAt(0);
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return isEmpty() ? null : entryAt(size() - 1);
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        throw new UnsupportedOperationException("ArrayMap is immutable");
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        throw new UnsupportedOperationException("ArrayMap is immutable");
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(final K key) {
+        return entryOf(keys.lower(key));
+    }
+
+    @Override
+    public K lowerKey(final K key) {
+        return keys.lower(key);
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(final K key) {
+        return entryOf(keys.floor(key));
+    }
+
+    @Override
+    public K floorKey(final K key) {
+        return keys.floor(key);
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(final K key) {
+        return entryOf(keys.ceiling(key));
+    }
+
+    @Override
+    public K ceilingKey(final K key) {
+        return keys.ceiling(key);
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(final K key) {
+        return entryOf(keys.higher(key));
+    }
+
+    @Override
+    public K higherKey(final K key) {
+        return keys.higher(key);
+    }
+
+    @Override
+    public ArraySet<K> keySet() {
+        return keys;
+    }
+
+    @Override
+    public ArraySet<K> navigableKeySet() {
+        return keys;
+    }
+
+    @Override
+    public ArraySet<K> descendingKeySet() {
+        return keys.descendingSet();
+    }
+
+    @Override
+    public ArrayMap<K, V> descendingMap() {
+        return view(keys.descendingSet());
+    }
+
+    @Override
+    public ArrayMap<K, V> subMap(final K fromKey, final boolean fromInclusive,
+                                 final K toKey, final boolean toInclusive) throws IllegalArgumentException {
+        return view(keys.subSet(fromKey, fromInclusive, toKey, toInclusive));
+    }
+
+    @Override
+    public ArrayMap<K, V> headMap(final K toKey, final boolean inclusive) {
+        return view(keys.headSet(toKey, inclusive));
+    }
+
+    @Override
+    public ArrayMap<K, V> tailMap(final K fromKey, final boolean inclusive) {
+        return view(keys.tailSet(fromKey, inclusive));
+    }
+
+    @Override
+    public ArrayMap<K, V> subMap(final K fromKey, final K toKey) throws IllegalArgumentException {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public ArrayMap<K, V> headMap(final K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public ArrayMap<K, V> tailMap(final K fromKey) {
+        return tailMap(fromKey, true);
+    }
+}
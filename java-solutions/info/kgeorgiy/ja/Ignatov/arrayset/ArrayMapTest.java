@@ -0,0 +1,136 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import org.junit.*;
+
+import java.util.*;
+
+public class ArrayMapTest {
+    private static final int TESTS = 50;
+    private static final int MAX_SIZE = 200;
+    private static final int MAX_VALUE = 300;
+    private static final List<Comparator<Integer>> COMPARATORS = Arrays.asList(
+            null,
+            Comparator.reverseOrder(),
+            Comparator.comparingInt(x -> x / 10)
+    );
+
+    private final Random random = new Random(30);
+
+    private int randomKey() {
+        return random.nextInt(2 * MAX_VALUE + 20) - MAX_VALUE - 10;
+    }
+
+    private Map<Integer, String> randomMap() {
+        final Map<Integer, String> map = new HashMap<>();
+        for (int size = random.nextInt(MAX_SIZE); size > 0; size--) {
+            final int key = random.nextInt(2 * MAX_VALUE) - MAX_VALUE;
+            map.put(key, "v" + key);
+        }
+        return map;
+    }
+
+    private static TreeMap<Integer, String> treeMap(final Map<Integer, String> map,
+                                                    final Comparator<Integer> comparator) {
+        // ArrayMap keeps the first of the equal keys with the last value in the iteration order of the source
+        final TreeMap<Integer, String> expected = new TreeMap<>(comparator);
+        for (final Map.Entry<Integer, String> entry : map.entrySet()) {
+            final Integer key = expected.containsKey(entry.getKey()) ? expected.ceilingKey(entry.getKey()) : entry.getKey();
+            expected.remove(key);
+            expected.put(key, entry.getValue());
+        }
+        return expected;
+    }
+
+    private void check(final String context, final NavigableMap<Integer, String> expected,
+                       final ArrayMap<Integer, String> actual) {
+        Assert.assertEquals(context + ": entries", new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()));
+        Assert.assertEquals(context + ": map", expected, actual);
+        Assert.assertEquals(context + ": size", expected.size(), actual.size());
+        Assert.assertEquals(context + ": keys", new ArrayList<>(expected.navigableKeySet()),
+                new ArrayList<>(actual.navigableKeySet()));
+        Assert.assertEquals(context + ": descending keys", new ArrayList<>(expected.descendingKeySet()),
+                new ArrayList<>(actual.descendingKeySet()));
+        Assert.assertEquals(context + ": first entry", expected.firstEntry(), actual.firstEntry());
+        Assert.assertEquals(context + ": last entry", expected.lastEntry(), actual.lastEntry());
+        for (final Map.Entry<Integer, String> entry : expected.entrySet()) {
+            Assert.assertTrue(context + ": contains entry " + entry, actual.entrySet().contains(entry));
+        }
+        for (int i = 0; i < 20; i++) {
+            final Integer key = randomKey();
+            Assert.assertEquals(context + ": get " + key, expected.get(key), actual.get(key));
+            Assert.assertEquals(context + ": containsKey " + key, expected.containsKey(key), actual.containsKey(key));
+            Assert.assertEquals(context + ": lowerEntry " + key, expected.lowerEntry(key), actual.lowerEntry(key));
+            Assert.assertEquals(context + ": floorEntry " + key, expected.floorEntry(key), actual.floorEntry(key));
+            Assert.assertEquals(context + ": ceilingEntry " + key, expected.ceilingEntry(key), actual.ceilingEntry(key));
+            Assert.assertEquals(context + ": higherEntry " + key, expected.higherEntry(key), actual.higherEntry(key));
+            Assert.assertEquals(context + ": higherKey " + key, expected.higherKey(key), actual.higherKey(key));
+        }
+    }
+
+    @Test
+    public void test01() {
+        for (final Comparator<Integer> comparator : COMPARATORS) {
+            for (int test = 0; test < TESTS; test++) {
+                final Map<Integer, String> map = randomMap();
+                check("map " + map, treeMap(map, comparator), new ArrayMap<>(map, comparator));
+            }
+        }
+        check("empty map", new TreeMap<>(), new ArrayMap<>());
+    }
+
+    @Test
+    public void test02() {
+        for (final Comparator<Integer> comparator : COMPARATORS) {
+            for (int test = 0; test < TESTS; test++) {
+                // views of TreeMap reject keys out of their range, so every view is copied
+                NavigableMap<Integer, String> expected = treeMap(randomMap(), comparator);
+                ArrayMap<Integer, String> actual = new ArrayMap<>(expected, comparator);
+                final StringBuilder path = new StringBuilder("map");
+                for (int depth = 0; depth < 6; depth++) {
+                    final int a = randomKey();
+                    final int b = randomKey();
+                    final boolean inclusive = random.nextBoolean();
+                    final Comparator<? super Integer> order = expected.comparator() == null
+                            ? Comparator.naturalOrder() : expected.comparator();
+                    final int low = order.compare(a, b) <= 0 ? a : b;
+                    final int high = low == a ? b : a;
+                    switch (random.nextInt(4)) {
+                        case 0 -> {
+                            path.append(".headMap(").append(a).append(", ").append(inclusive).append(")");
+                            expected = new TreeMap<>(expected.headMap(a, inclusive));
+                            actual = actual.headMap(a, inclusive);
+                        }
+                        case 1 -> {
+                            path.append(".tailMap(").append(a).append(", ").append(inclusive).append(")");
+                            expected = new TreeMap<>(expected.tailMap(a, inclusive));
+                            actual = actual.tailMap(a, inclusive);
+                        }
+                        case 2 -> {
+                            path.append(".subMap(").append(low).append(", ").append(high).append(")");
+                            expected = new TreeMap<>(expected.subMap(low, inclusive, high, !inclusive));
+                            actual = actual.subMap(low, inclusive, high, !inclusive);
+                        }
+                        default -> {
+                            path.append(".descendingMap()");
+                            expected = new TreeMap<>(expected.descendingMap());
+                            actual = actual.descendingMap();
+                        }
+                    }
+                    check(path.toString(), expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test03() {
+        final ArrayMap<Integer, String> map = new ArrayMap<>(Map.of(1, "a", 2, "b"));
+        Assert.assertNull("expected natural order", map.comparator());
+        Assert.assertNull("expected natural order after flipping twice", map.descendingMap().descendingMap().comparator());
+        Assert.assertNull("expected no value of a missing key", map.get(3));
+        Assert.assertThrows(UnsupportedOperationException.class, map::pollFirstEntry);
+        Assert.assertThrows(UnsupportedOperationException.class, () -> map.put(3, "c"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> map.subMap(2, 1));
+        Assert.assertThrows(NoSuchElementException.class, () -> map.headMap(1).firstKey());
+    }
+}
@@ -1,24 +1,44 @@
 package info.kgeorgiy.ja.Ignatov.arrayset;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
+ * Immutable navigable set over a sorted list.
+ * Every view, including the descending one, is a range of indices of the same list,
+ * so it is created in constant time and searched in logarithmic time.
+ *
  * @author Ignatov Nikolay
  */
-public class ArraySet<E extends Comparable<E>> extends AbstractSet<E> implements SortedSet<E> {
+public class ArraySet<E extends Comparable<E>> extends AbstractSet<E> implements NavigableSet<E> {
+    // sets with sizes differing more than this are merged by exponential search in the larger one
+    private static final int GALLOP_RATIO = 16;
+    // below this size the fork-join overhead of Arrays.parallelSort does not pay off
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
     private final List<E> elements;
+    private final int from;
+    private final int to;
+    private final boolean descending;
+    // the comparator of the ascending order as given on creation, shared by the views of both directions
     private final Comparator<? super E> comparator;
     private final Comparator<? super E> comparatorUsed;
 
     public ArraySet() {
         elements = List.of();
+        from = 0;
+        to = 0;
+        descending = false;
         comparator = null;
         comparatorUsed = Comparator.naturalOrder();
     }
 
-    private ArraySet(final List<E> elements, final Comparator<? super E> comparator,
-                     final Comparator<? super E> comparatorUsed) {
+    private ArraySet(final List<E> elements, final int from, final int to, final boolean descending,
+                     final Comparator<? super E> comparator, final Comparator<? super E> comparatorUsed) {
         this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
         this.comparator = comparator;
         this.comparatorUsed = comparatorUsed;
     }
@@ -26,69 +46,369 @@ public class ArraySet<E extends Comparable<E>> extends AbstractSet<E> implements
     public ArraySet(final Collection<? extends E> collection, final Comparator<? super E> comparator) {
         this.comparator = comparator;
         comparatorUsed = comparator == null ? Comparator.naturalOrder() : comparator;
-        elements = new ArrayList<>();
-
-        final List<E> sortedListOfElements = new ArrayList<>(collection);
-        sortedListOfElements.sort(comparator);
-        for (final E sortedListOfElement : sortedListOfElements) {
-            if (!elements.isEmpty()) {
-                if (comparatorUsed.compare(sortedListOfElement, elements.get(elements.size() - 1)) == 0) {
-                    continue;
-                }
-            }
-            elements.add(sortedListOfElement);
-        }
+        final Object[] array = collection.toArray();
+        elements = asList(array);
+        from = 0;
+        // a sorted set in the same order is already sorted and distinct
+        to = collection instanceof SortedSet<?> set
+                && comparatorUsed.equals(set.comparator() == null ? Comparator.naturalOrder() : set.comparator())
+                ? array.length
+                : sortUnique(array, array.length, comparatorUsed);
+        descending = false;
+    }
+
+    private ArraySet(final Object[] array, final int length, final Comparator<? super E> comparator) {
+        this.comparator = comparator;
+        comparatorUsed = comparator == null ? Comparator.naturalOrder() : comparator;
+        elements = asList(array);
+        from = 0;
+        to = sortUnique(array, length, comparatorUsed);
+        descending = false;
     }
 
     public ArraySet(final Collection<? extends E> collection) {
         this(collection, null);
     }
 
-    private int lowerBound(final E key, boolean inclusive) {
-        // :NOTE: Collections.binarySearch(elements, key);
-        final var index = Collections.binarySearch(elements, key, comparatorUsed);
-        if (index < 0) {
-            return -index - 2;
+    /**
+     * Creates a builder of a set in the natural order.
+     *
+     * @param <E> type of the elements
+     * @return empty builder
+     */
+    public static <E extends Comparable<E>> Builder<E> builder() {
+        return new Builder<E>(null);
+    }
+
+    /**
+     * Creates a builder of a set in the order of the comparator.
+     *
+     * @param comparator comparator of the elements, {@code null} for the natural order
+     * @param <E>        type of the elements
+     * @return empty builder
+     */
+    public static <E extends Comparable<E>> Builder<E> builder(final Comparator<? super E> comparator) {
+        return new Builder<E>(comparator);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> List<E> asList(final Object[] array) {
+        return (List<E>) Arrays.asList(array);
+    }
+
+    /**
+     * Sorts the first {@code length} elements of the array and moves the distinct ones to the beginning.
+     * The sort is skipped if the elements are already in order,
+     * and the deduplication is skipped if there are no equal neighbours.
+     *
+     * @return number of the distinct elements
+     */
+    @SuppressWarnings("unchecked")
+    private static int sortUnique(final Object[] array, final int length, final Comparator<?> comparator) {
+        final Comparator<Object> order = (Comparator<Object>) comparator;
+        boolean sorted = true;
+        boolean distinct = true;
+        for (int i = 1; i < length && sorted; i++) {
+            final int c = order.compare(array[i - 1], array[i]);
+            sorted = c <= 0;
+            distinct &= c != 0;
+        }
+        if (!sorted) {
+            if (length >= PARALLEL_SORT_THRESHOLD) {
+                Arrays.parallelSort(array, 0, length, order);
+            } else {
+                Arrays.sort(array, 0, length, order);
+            }
+            distinct = false;
         }
-        return inclusive ? index : index - 1;
+        if (distinct) {
+            return length;
+        }
+        int size = Math.min(length, 1);
+        for (int i = 1; i < length; i++) {
+            if (order.compare(array[size - 1], array[i]) != 0) {
+                array[size++] = array[i];
+            }
+        }
+        Arrays.fill(array, size, length, null);
+        return size;
+    }
+
+    /**
+     * Returns the first index of the range having the element greater than the key,
+     * or greater or equal if {@code inclusive}. The indices are in the ascending order of {@link #comparatorUsed}.
+     */
+    private int ceilingIndex(final E key, final boolean inclusive) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final int c = comparatorUsed.compare(elements.get(middle), key);
+            if (c < 0 || c == 0 && !inclusive) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
 
+    /**
+     * Returns the first index in {@code [low, high)} of the list having the element greater or equal to the key.
+     * Probes at the distances 1, 2, 4... from {@code low} before the binary search,
+     * so the time is logarithmic in the distance to the result rather than in the length of the range.
+     */
+    private int seek(final List<? extends E> list, int low, final int high, final E key) {
+        int bound = low;
+        int step = 1;
+        while (bound < high && comparatorUsed.compare(list.get(bound), key) < 0) {
+            low = bound + 1;
+            bound += step;
+            step <<= 1;
+        }
+        int right = Math.min(bound, high);
+        while (low < right) {
+            final int middle = (low + right) >>> 1;
+            if (comparatorUsed.compare(list.get(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                right = middle;
+            }
+        }
+        return low;
+    }
+
+    private E elementAt(final int index) {
+        return from <= index && index < to ? elements.get(index) : null;
+    }
+
+    private ArraySet<E> window(final int fromIndex, final int toIndex) {
+        return new ArraySet<>(elements, fromIndex, Math.max(fromIndex, toIndex), descending, comparator, comparatorUsed);
+    }
 
     @Override
     public Iterator<E> iterator() {
-        return Collections.unmodifiableCollection(elements).iterator();
+        final List<E> range = Collections.unmodifiableList(elements.subList(from, to));
+        if (!descending) {
+            return range.iterator();
+        }
+        final ListIterator<E> iterator = range.listIterator(range.size());
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasPrevious();
+            }
+
+            @Override
+            public E next() {
+                return iterator.previous();
+            }
+        };
+    }
+
+    /**
+     * Returns a spliterator splitting the positions of the set in halves.
+     * It reports the order of the set, so streams skip {@code sorted()} and {@code distinct()}.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new RangeSpliterator(0, size());
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public ArraySet<E> descendingSet() {
+        return new ArraySet<>(elements, from, to, !descending, comparator, comparatorUsed);
     }
 
     @Override
     public int size() {
-        return elements.size();
+        return to - from;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public boolean contains(final Object a) {
-        return Collections.binarySearch(elements, (E) a, comparator) >= 0;
+        final E key = (E) a;
+        final int index = ceilingIndex(key, true);
+        return index < to && comparatorUsed.compare(elements.get(index), key) == 0;
     }
 
     @Override
     public Comparator<? super E> comparator() {
-        return comparator;
+        return descending ? Collections.reverseOrder(comparator) : comparator;
+    }
+
+    @Override
+    public E lower(final E e) {
+        return elementAt(descending ? ceilingIndex(e, false) : ceilingIndex(e, true) - 1);
+    }
+
+    @Override
+    public E floor(final E e) {
+        return elementAt(descending ? ceilingIndex(e, true) : ceilingIndex(e, false) - 1);
+    }
+
+    @Override
+    public E ceiling(final E e) {
+        return elementAt(descending ? ceilingIndex(e, false) - 1 : ceilingIndex(e, true));
+    }
+
+    @Override
+    public E higher(final E e) {
+        return elementAt(descending ? ceilingIndex(e, true) - 1 : ceilingIndex(e, false));
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException("ArraySet is immutable");
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException("ArraySet is immutable");
+    }
+
+    @Override
+    public ArraySet<E> headSet(final E toElement, final boolean inclusive) {
+        return descending
+                ? window(ceilingIndex(toElement, inclusive), to)
+                : window(from, ceilingIndex(toElement, !inclusive));
+    }
+
+    @Override
+    public ArraySet<E> tailSet(final E fromElement, final boolean inclusive) {
+        return descending
+                ? window(from, ceilingIndex(fromElement, !inclusive))
+                : window(ceilingIndex(fromElement, inclusive), to);
+    }
+
+    @Override
+    public ArraySet<E> subSet(final E fromElement, final boolean fromInclusive,
+                                  final E toElement, final boolean toInclusive) throws IllegalArgumentException {
+        checkRange(fromElement, toElement);
+        return descending
+                ? window(ceilingIndex(toElement, toInclusive), ceilingIndex(fromElement, !fromInclusive))
+                : window(ceilingIndex(fromElement, fromInclusive), ceilingIndex(toElement, !toInclusive));
+    }
+
+    private void checkRange(final E fromElement, final E toElement) throws IllegalArgumentException {
+        final int c = comparatorUsed.compare(fromElement, toElement);
+        if (descending ? c < 0 : c > 0) {
+            throw new IllegalArgumentException("illegal arguments for subset");
+        }
+    }
+
+    /**
+     * Returns the element at the position in the order of this set.
+     *
+     * @param index position of the element
+     * @return the element
+     * @throws IndexOutOfBoundsException if the index is negative or not less than the size
+     */
+    public E get(final int index) {
+        Objects.checkIndex(index, size());
+        return elements.get(backingIndex(index));
+    }
+
+    /**
+     * Returns the index in the backing list of the element at the position in the order of this set.
+     */
+    /*package-private*/ int backingIndex(final int position) {
+        return descending ? to - 1 - position : from + position;
+    }
+
+    /**
+     * Creates a set over a list, which must be sorted by the comparator and have no equal elements.
+     */
+    /*package-private*/ static <E extends Comparable<E>> ArraySet<E> ofSorted(final List<E> sorted,
+                                                                             final Comparator<? super E> comparator) {
+        return new ArraySet<>(sorted, 0, sorted.size(), false, comparator,
+                comparator == null ? Comparator.naturalOrder() : comparator);
+    }
+
+    /**
+     * Returns the position of the element in the order of this set.
+     *
+     * @param e element to find
+     * @return position of the element or {@code -1} if it is not in the set
+     */
+    public int indexOf(final E e) {
+        final int index = ceilingIndex(e, true);
+        if (index == to || comparatorUsed.compare(elements.get(index), e) != 0) {
+            return -1;
+        }
+        return descending ? to - 1 - index : index - from;
+    }
+
+    /**
+     * Returns the size of {@link #subSet(Object, boolean, Object, boolean)} without creating it.
+     *
+     * @param fromElement   low endpoint
+     * @param fromInclusive whether the low endpoint is included
+     * @param toElement     high endpoint
+     * @param toInclusive   whether the high endpoint is included
+     * @return number of the elements in the range
+     * @throws IllegalArgumentException if {@code fromElement} is greater than {@code toElement}
+     */
+    public int countInRange(final E fromElement, final boolean fromInclusive,
+                            final E toElement, final boolean toInclusive) throws IllegalArgumentException {
+        checkRange(fromElement, toElement);
+        final int count = descending
+                ? ceilingIndex(fromElement, !fromInclusive) - ceilingIndex(toElement, toInclusive)
+                : ceilingIndex(toElement, !toInclusive) - ceilingIndex(fromElement, fromInclusive);
+        return Math.max(count, 0);
+    }
+
+    /**
+     * Returns the number of elements from {@code fromElement} inclusive to {@code toElement} exclusive.
+     *
+     * @param fromElement low endpoint
+     * @param toElement   high endpoint
+     * @return number of the elements in the range
+     * @throws IllegalArgumentException if {@code fromElement} is greater than {@code toElement}
+     */
+    public int countInRange(final E fromElement, final E toElement) throws IllegalArgumentException {
+        return countInRange(fromElement, true, toElement, false);
+    }
+
+    /**
+     * Returns the element at the percentile by the nearest-rank method:
+     * the smallest element such that at least {@code percentile} percents of the elements are not greater.
+     *
+     * @param percentile percentile from 0 to 100
+     * @return the element
+     * @throws IllegalArgumentException if the percentile is out of range
+     * @throws NoSuchElementException   if the set is empty
+     */
+    public E percentile(final double percentile) {
+        if (!(0 <= percentile && percentile <= 100)) {
+            throw new IllegalArgumentException("percentile must be from 0 to 100: " + percentile);
+        }
+        if (isEmpty()) {
+            throw new NoSuchElementException("percentile of an empty set does not exist");
+        }
+        return get(Math.max(0, (int) Math.ceil(percentile / 100 * size()) - 1));
     }
 
     @Override
-    public SortedSet<E> headSet(final E toElement) {
-        return new ArraySet<>(elements.subList(0, lowerBound(toElement, false) + 1), comparator, comparatorUsed);
+    public ArraySet<E> headSet(final E toElement) {
+        return headSet(toElement, false);
     }
 
     @Override
-    public SortedSet<E> tailSet(final E fromElement) {
-        return new ArraySet<>(elements.subList(lowerBound(fromElement, false) + 1, size()), comparator, comparatorUsed);
+    public ArraySet<E> tailSet(final E fromElement) {
+        return tailSet(fromElement, true);
     }
 
     @Override
     public E first() throws NoSuchElementException {
         if (!isEmpty()) {
-            return elements.get(0);
+            return elements.get(descending ? to - 1 : from);
         }
         throw new NoSuchElementException("first element does not exist");
     }
@@ -96,17 +416,239 @@ public class ArraySet<E extends Comparable<E>> extends AbstractSet<E> implements
     @Override
     public E last() throws NoSuchElementException {
         if (!isEmpty()) {
-            return elements.get(size() - 1);
+            return elements.get(descending ? from : to - 1);
         }
         throw new NoSuchElementException("last element does not exist");
     }
 
     @Override
-    public SortedSet<E> subSet(final E fromElement, final E toElement)
+    public ArraySet<E> subSet(final E fromElement, final E toElement)
             throws IllegalArgumentException {
-        if (comparatorUsed.compare(toElement, fromElement) >= 0) {
-            return headSet(toElement).tailSet(fromElement);
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    /**
+     * Returns the set of the elements contained in this set or in the collection.
+     *
+     * @param other collection to unite with
+     * @return set ordered like this one
+     */
+    public ArraySet<E> union(final Collection<? extends E> other) {
+        return merge(other, true, true, true);
+    }
+
+    /**
+     * Returns the set of the elements contained both in this set and in the collection.
+     * This is the result of {@link #retainAll} on a mutable copy.
+     *
+     * @param other collection to intersect with
+     * @return set ordered like this one
+     */
+    public ArraySet<E> intersection(final Collection<? extends E> other) {
+        return merge(other, false, true, false);
+    }
+
+    /**
+     * Returns the set of the elements contained in this set but not in the collection.
+     * This is the result of {@link #removeAll} on a mutable copy.
+     *
+     * @param other collection to subtract
+     * @return set ordered like this one
+     */
+    public ArraySet<E> difference(final Collection<? extends E> other) {
+        return merge(other, true, false, false);
+    }
+
+    @Override
+    public boolean containsAll(final Collection<?> c) {
+        final ArraySet<? extends E> other = compatible(c);
+        if (other == null) {
+            return super.containsAll(c);
+        }
+        int i = from;
+        for (int j = other.from; j < other.to; j++) {
+            final E key = other.elements.get(j);
+            i = seek(elements, i, to, key);
+            if (i == to || comparatorUsed.compare(elements.get(i), key) != 0) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        final ArraySet<? extends E> other = o instanceof Collection<?> c ? compatible(c) : null;
+        if (other == null) {
+            return super.equals(o);
+        }
+        if (size() != other.size()) {
+            return false;
+        }
+        for (int i = from, j = other.from; i < to; i++, j++) {
+            if (comparatorUsed.compare(elements.get(i), other.elements.get(j)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the collection as an {@code ArraySet} with the same backing order, or {@code null} if it is not one.
+     */
+    @SuppressWarnings("unchecked")
+    private ArraySet<? extends E> compatible(final Collection<?> c) {
+        if (c instanceof ArraySet<?> set && comparatorUsed.equals(set.comparatorUsed)) {
+            return (ArraySet<? extends E>) set;
+        }
+        return null;
+    }
+
+    /**
+     * Merges the backing ranges of this set and of the collection in a single pass.
+     * A collection in a different order is sorted first.
+     */
+    private ArraySet<E> merge(final Collection<? extends E> collection,
+                              final boolean keepLeft, final boolean keepBoth, final boolean keepRight) {
+        final ArraySet<? extends E> compatible = compatible(collection);
+        final ArraySet<? extends E> other = compatible != null ? compatible : new ArraySet<>(collection, comparatorUsed);
+        final boolean gallop = (long) Math.min(size(), other.size()) * GALLOP_RATIO < Math.max(size(), other.size());
+
+        final List<E> result = new ArrayList<>();
+        int i = from;
+        int j = other.from;
+        while (i < to && j < other.to) {
+            final int c = comparatorUsed.compare(elements.get(i), other.elements.get(j));
+            if (c < 0) {
+                final int next = gallop ? seek(elements, i + 1, to, other.elements.get(j)) : i + 1;
+                if (keepLeft) {
+                    result.addAll(elements.subList(i, next));
+                }
+                i = next;
+            } else if (c > 0) {
+                final int next = gallop ? seek(other.elements, j + 1, other.to, elements.get(i)) : j + 1;
+                if (keepRight) {
+                    result.addAll(other.elements.subList(j, next));
+                }
+                j = next;
+            } else {
+                if (keepBoth) {
+                    result.add(elements.get(i));
+                }
+                i++;
+                j++;
+            }
+        }
+        if (keepLeft) {
+            result.addAll(elements.subList(i, to));
+        }
+        if (keepRight) {
+            result.addAll(other.elements.subList(j, other.to));
+        }
+        return new ArraySet<>(result, 0, result.size(), descending, comparator, comparatorUsed);
+    }
+
+    /**
+     * Collects elements into an {@link ArraySet} without intermediate collections.
+     * Elements added in order are not sorted again, equal elements are removed in place.
+     *
+     * @param <E> type of the elements
+     */
+    public static final class Builder<E extends Comparable<E>> {
+        private final Comparator<? super E> comparator;
+        private Object[] elements = new Object[16];
+        private int size;
+
+        private Builder(final Comparator<? super E> comparator) {
+            this.comparator = comparator;
+        }
+
+        public Builder<E> add(final E element) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, 2 * size);
+            }
+            elements[size++] = element;
+            return this;
+        }
+
+        public Builder<E> addAll(final Collection<? extends E> collection) {
+            final Object[] added = collection.toArray();
+            if (size + added.length > elements.length) {
+                elements = Arrays.copyOf(elements, Math.max(2 * elements.length, size + added.length));
+            }
+            System.arraycopy(added, 0, elements, size, added.length);
+            size += added.length;
+            return this;
+        }
+
+        /**
+         * Creates the set of the added elements and empties the builder.
+         * The set takes the buffer of the builder without copying.
+         *
+         * @return set of the added elements
+         */
+        public ArraySet<E> build() {
+            final ArraySet<E> set = new ArraySet<E>(elements, size, comparator);
+            elements = new Object[16];
+            size = 0;
+            return set;
+        }
+    }
+
+    /**
+     * Spliterator over the positions {@code [position, end)} of the set.
+     */
+    private final class RangeSpliterator implements Spliterator<E> {
+        private int position;
+        private final int end;
+
+        private RangeSpliterator(final int position, final int end) {
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super E> action) {
+            if (position < end) {
+                action.accept(get(position++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super E> action) {
+            for (; position < end; position++) {
+                action.accept(get(position));
+            }
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            final int middle = (position + end) >>> 1;
+            if (middle <= position) {
+                return null;
+            }
+            final Spliterator<E> prefix = new RangeSpliterator(position, middle);
+            position = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            // the order of this view, a descending one must not be taken for the natural order
+            return comparator();
         }
-        throw new IllegalArgumentException("illegal arguments for subset");
     }
 }
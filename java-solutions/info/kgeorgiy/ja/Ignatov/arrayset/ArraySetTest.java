@@ -0,0 +1,277 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import org.junit.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class ArraySetTest {
+    private static final int TESTS = 50;
+    private static final int MAX_SIZE = 200;
+    private static final int MAX_VALUE = 300;
+    private static final List<Comparator<Integer>> COMPARATORS = Arrays.asList(
+            null,
+            Comparator.reverseOrder(),
+            Comparator.comparingInt(x -> x / 10)
+    );
+
+    private final Random random = new Random(239);
+
+    private List<Integer> randomList(final int size) {
+        return random.ints(size, -MAX_VALUE, MAX_VALUE).boxed().collect(Collectors.toList());
+    }
+
+    private int randomValue() {
+        return random.nextInt(2 * MAX_VALUE + 20) - MAX_VALUE - 10;
+    }
+
+    private static TreeSet<Integer> treeSet(final Collection<Integer> values, final Comparator<Integer> comparator) {
+        // the first of the equal elements is kept, like in ArraySet
+        final TreeSet<Integer> set = new TreeSet<>(comparator);
+        set.addAll(values);
+        return set;
+    }
+
+    private void check(final String context, final NavigableSet<Integer> expected, final ArraySet<Integer> actual) {
+        Assert.assertEquals(context + ": elements", new ArrayList<>(expected), new ArrayList<>(actual));
+        Assert.assertEquals(context + ": size", expected.size(), actual.size());
+        Assert.assertEquals(context + ": isEmpty", expected.isEmpty(), actual.isEmpty());
+        if (!expected.isEmpty()) {
+            Assert.assertEquals(context + ": first", expected.first(), actual.first());
+            Assert.assertEquals(context + ": last", expected.last(), actual.last());
+        }
+        for (int i = 0; i < 20; i++) {
+            final Integer value = randomValue();
+            Assert.assertEquals(context + ": contains " + value, expected.contains(value), actual.contains(value));
+            Assert.assertEquals(context + ": lower " + value, expected.lower(value), actual.lower(value));
+            Assert.assertEquals(context + ": floor " + value, expected.floor(value), actual.floor(value));
+            Assert.assertEquals(context + ": ceiling " + value, expected.ceiling(value), actual.ceiling(value));
+            Assert.assertEquals(context + ": higher " + value, expected.higher(value), actual.higher(value));
+        }
+        int position = 0;
+        for (final Integer element : expected) {
+            Assert.assertEquals(context + ": get " + position, element, actual.get(position));
+            Assert.assertEquals(context + ": indexOf " + element, position, actual.indexOf(element));
+            position++;
+        }
+        Assert.assertEquals(context + ": descending elements",
+                new ArrayList<>(expected.descendingSet()), new ArrayList<>(actual.descendingSet()));
+    }
+
+    @Test
+    public void test01() {
+        for (final Comparator<Integer> comparator : COMPARATORS) {
+            for (int test = 0; test < TESTS; test++) {
+                final List<Integer> values = randomList(random.nextInt(MAX_SIZE));
+                check("set " + values, treeSet(values, comparator), new ArraySet<>(values, comparator));
+            }
+        }
+        check("empty set", new TreeSet<>(), new ArraySet<>());
+    }
+
+    @Test
+    public void test02() {
+        for (final Comparator<Integer> comparator : COMPARATORS) {
+            for (int test = 0; test < TESTS; test++) {
+                // views of TreeSet reject keys out of their range, so every view is copied
+                NavigableSet<Integer> expected = treeSet(randomList(random.nextInt(MAX_SIZE)), comparator);
+                ArraySet<Integer> actual = new ArraySet<>(expected, comparator);
+                final StringBuilder path = new StringBuilder("set");
+                for (int depth = 0; depth < 6; depth++) {
+                    final int a = randomValue();
+                    final int b = randomValue();
+                    final boolean inclusive = random.nextBoolean();
+                    final Comparator<? super Integer> order = expected.comparator() == null
+                            ? Comparator.naturalOrder() : expected.comparator();
+                    final int low = order.compare(a, b) <= 0 ? a : b;
+                    final int high = low == a ? b : a;
+                    switch (random.nextInt(4)) {
+                        case 0 -> {
+                            path.append(".headSet(").append(a).append(", ").append(inclusive).append(")");
+                            expected = new TreeSet<>(expected.headSet(a, inclusive));
+                            actual = actual.headSet(a, inclusive);
+                        }
+                        case 1 -> {
+                            path.append(".tailSet(").append(a).append(", ").append(inclusive).append(")");
+                            expected = new TreeSet<>(expected.tailSet(a, inclusive));
+                            actual = actual.tailSet(a, inclusive);
+                        }
+                        case 2 -> {
+                            path.append(".subSet(").append(low).append(", ").append(high).append(")");
+                            expected = new TreeSet<>(expected.subSet(low, inclusive, high, !inclusive));
+                            actual = actual.subSet(low, inclusive, high, !inclusive);
+                        }
+                        default -> {
+                            path.append(".descendingSet()");
+                            expected = new TreeSet<>(expected.descendingSet());
+                            actual = actual.descendingSet();
+                        }
+                    }
+                    check(path.toString(), expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test03() {
+        final ArraySet<Integer> natural = new ArraySet<>(List.of(3, 1, 2));
+        Assert.assertNull("expected natural order", natural.comparator());
+        Assert.assertTrue("expected descending order", natural.descendingSet().comparator().compare(1, 2) > 0);
+        Assert.assertNull("expected natural order after flipping twice",
+                natural.descendingSet().descendingSet().comparator());
+        final Comparator<Integer> reverse = Comparator.reverseOrder();
+        final ArraySet<Integer> reversed = new ArraySet<>(List.of(3, 1, 2), reverse);
+        Assert.assertSame("expected the original comparator after flipping twice",
+                reverse, reversed.descendingSet().descendingSet().comparator());
+        Assert.assertEquals("expected a copy of the descending view in its order", List.of(3, 2, 1),
+                new ArrayList<>(new ArraySet<>(natural.descendingSet(), natural.descendingSet().comparator())));
+    }
+
+    @Test
+    public void test04() {
+        for (final Comparator<Integer> comparator : COMPARATORS) {
+            for (int test = 0; test < TESTS; test++) {
+                final NavigableSet<Integer> expected = treeSet(randomList(random.nextInt(MAX_SIZE)), comparator);
+                final ArraySet<Integer> set = new ArraySet<>(expected, comparator);
+                for (int i = 0; i < 20; i++) {
+                    final int a = randomValue();
+                    final int b = randomValue();
+                    final Comparator<? super Integer> order = comparator == null ? Comparator.naturalOrder() : comparator;
+                    final int low = order.compare(a, b) <= 0 ? a : b;
+                    final int high = low == a ? b : a;
+                    for (final boolean fromInclusive : new boolean[]{false, true}) {
+                        for (final boolean toInclusive : new boolean[]{false, true}) {
+                            if (order.compare(low, high) == 0 && fromInclusive != toInclusive) {
+                                continue;
+                            }
+                            Assert.assertEquals("countInRange " + low + " " + high,
+                                    expected.subSet(low, fromInclusive, high, toInclusive).size(),
+                                    set.countInRange(low, fromInclusive, high, toInclusive));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test05() {
+        for (final Comparator<Integer> comparator : COMPARATORS) {
+            for (int test = 0; test < TESTS; test++) {
+                // sizes differing a lot use the galloping merge
+                final List<Integer> a = randomList(random.nextInt(MAX_SIZE));
+                final List<Integer> b = randomList(random.nextBoolean() ? random.nextInt(MAX_SIZE) : random.nextInt(5));
+                final ArraySet<Integer> set = new ArraySet<>(a, comparator);
+                final List<Collection<Integer>> others = List.of(
+                        new ArraySet<>(b, comparator),
+                        new ArraySet<>(b, comparator).descendingSet(),
+                        new ArrayList<>(b)
+                );
+                for (final Collection<Integer> other : others) {
+                    final String context = a + " and " + other;
+                    final TreeSet<Integer> union = treeSet(a, comparator);
+                    union.addAll(other);
+                    check("union of " + context, union, set.union(other));
+                    final TreeSet<Integer> intersection = treeSet(a, comparator);
+                    intersection.retainAll(treeSet(other, comparator));
+                    check("intersection of " + context, intersection, set.intersection(other));
+                    final TreeSet<Integer> difference = treeSet(a, comparator);
+                    difference.removeAll(treeSet(other, comparator));
+                    check("difference of " + context, difference, set.difference(other));
+                    Assert.assertEquals("containsAll of " + context,
+                            treeSet(a, comparator).containsAll(treeSet(other, comparator)), set.containsAll(other));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test06() {
+        for (final Comparator<Integer> comparator : COMPARATORS) {
+            final List<Integer> values = randomList(1000);
+            final ArraySet.Builder<Integer> builder = ArraySet.builder(comparator);
+            for (final Integer value : values.subList(0, 500)) {
+                builder.add(value);
+            }
+            builder.addAll(values.subList(500, values.size()));
+            check("built set", treeSet(values, comparator), builder.build());
+            check("set of a sorted set", treeSet(values, comparator), new ArraySet<>(treeSet(values, comparator), comparator));
+            Assert.assertTrue("expected empty builder", builder.build().isEmpty());
+        }
+    }
+
+    private static void checkSplit(final String context, final Spliterator<Integer> spliterator,
+                                   final List<Integer> expected) {
+        Assert.assertEquals(context + ": estimateSize", expected.size(), spliterator.estimateSize());
+        final Spliterator<Integer> prefix = spliterator.trySplit();
+        if (prefix == null) {
+            Assert.assertTrue(context + ": expected a split of more than one element", expected.size() <= 1);
+            final List<Integer> actual = new ArrayList<>();
+            spliterator.forEachRemaining(actual::add);
+            Assert.assertEquals(context + ": elements", expected, actual);
+            return;
+        }
+        final int middle = (int) prefix.estimateSize();
+        Assert.assertEquals(context + ": split in halves", expected.size() / 2, middle);
+        Assert.assertEquals(context + ": exact sizes of the parts", expected.size(),
+                prefix.getExactSizeIfKnown() + spliterator.getExactSizeIfKnown());
+        checkSplit(context + " prefix", prefix, expected.subList(0, middle));
+        checkSplit(context + " suffix", spliterator, expected.subList(middle, expected.size()));
+    }
+
+    @Test
+    public void test07() {
+        final int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT
+                | Spliterator.SIZED | Spliterator.SUBSIZED;
+        for (final Comparator<Integer> comparator : COMPARATORS) {
+            for (int test = 0; test < TESTS; test++) {
+                ArraySet<Integer> set = new ArraySet<>(randomList(random.nextInt(MAX_SIZE)), comparator);
+                final int a = randomValue();
+                final int b = randomValue();
+                switch (random.nextInt(3)) {
+                    case 0 -> set = set.headSet(a, true);
+                    case 1 -> set = set.tailSet(b, false);
+                    default -> { }
+                }
+                for (final ArraySet<Integer> view : List.of(set, set.descendingSet())) {
+                    final List<Integer> elements = new ArrayList<>(view);
+                    final String context = "view " + elements;
+                    final Spliterator<Integer> spliterator = view.spliterator();
+                    Assert.assertEquals(context + ": characteristics",
+                            characteristics, spliterator.characteristics() & characteristics);
+                    Assert.assertEquals(context + ": comparator", view.comparator(), spliterator.getComparator());
+                    checkSplit(context, view.spliterator(), elements);
+
+                    final List<Integer> sorted = new ArrayList<>(elements);
+                    sorted.sort(null);
+                    Assert.assertEquals(context + ": sorted", sorted, view.stream().sorted().toList());
+                    Assert.assertEquals(context + ": parallel sorted", sorted, view.parallelStream().sorted().toList());
+                    Assert.assertEquals(context + ": distinct", elements, view.stream().distinct().toList());
+                    Assert.assertEquals(context + ": parallel", elements, view.parallelStream().toList());
+                    if (!elements.isEmpty()) {
+                        Assert.assertEquals(context + ": findFirst", elements.get(0),
+                                view.parallelStream().findFirst().orElseThrow());
+                    }
+                }
+            }
+        }
+        final ArraySet<Integer> natural = new ArraySet<>(List.of(1, 2, 3, 4, 5));
+        Assert.assertNull("expected natural order", natural.spliterator().getComparator());
+        Assert.assertEquals("expected reverse natural order",
+                Collections.reverseOrder(), natural.descendingSet().spliterator().getComparator());
+        Assert.assertEquals("expected the descending view to be sorted",
+                List.of(1, 2, 3, 4, 5), natural.descendingSet().stream().sorted().toList());
+    }
+
+    @Test
+    public void test08() {
+        final ArraySet<Integer> set = new ArraySet<>(List.of(1, 2, 3));
+        Assert.assertThrows(UnsupportedOperationException.class, set::pollFirst);
+        Assert.assertThrows(IllegalArgumentException.class, () -> set.subSet(3, 1));
+        Assert.assertThrows(IllegalArgumentException.class, () -> set.descendingSet().subSet(1, 3));
+        Assert.assertThrows(NoSuchElementException.class, () -> set.headSet(1).first());
+        Assert.assertThrows(IndexOutOfBoundsException.class, () -> set.get(3));
+        Assert.assertEquals("expected -1 for a missing element", -1, set.indexOf(4));
+    }
+}
@@ -0,0 +1,494 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable compressed set of {@code int} values in the natural order, in the style of Roaring bitmaps.
+ * <p>
+ * Values are split by the high 16 bits into containers. A container of at most {@value #ARRAY_LIMIT}
+ * values stores their low 16 bits in a sorted {@code char[]}, two bytes per value, a denser one is a bitmap
+ * of 8 KiB, at most one bit per value. Counts of the values before every container
+ * and before every block of {@value #BLOCK_WORDS} words of a bitmap make {@link #rank} and {@link #select}
+ * logarithmic. Union and intersection combine the containers directly, without decompressing the sets.
+ *
+ * @author Ignatov Nikolay
+ */
+public class CompressedIntSet extends AbstractSet<Integer> {
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = (1 << 16) / Long.SIZE;
+    private static final int BLOCK_WORDS = 8;
+    private static final int BLOCKS = BITMAP_WORDS / BLOCK_WORDS;
+    private static final CompressedIntSet EMPTY = new CompressedIntSet(new char[0], new Container[0]);
+
+    // high 16 bits with the sign bit flipped, so the unsigned order of the keys is the order of the values
+    private final char[] keys;
+    private final Container[] containers;
+    // counts[i] is the number of values in the containers before the i-th one
+    private final int[] counts;
+
+    private CompressedIntSet(final char[] keys, final Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+        counts = new int[containers.length + 1];
+        for (int i = 0; i < containers.length; i++) {
+            counts[i + 1] = counts[i] + containers[i].cardinality();
+        }
+    }
+
+    /**
+     * Creates a set of the values.
+     *
+     * @param values values in any order, possibly repeated
+     * @return set of the values
+     */
+    public static CompressedIntSet of(final int... values) {
+        final int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        final List<Character> keys = new ArrayList<>();
+        final List<Container> containers = new ArrayList<>();
+        for (int i = 0; i < sorted.length; ) {
+            final char key = high(sorted[i]);
+            int end = i;
+            while (end < sorted.length && high(sorted[end]) == key) {
+                end++;
+            }
+            final char[] lows = new char[end - i];
+            int size = 0;
+            for (; i < end; i++) {
+                if (size == 0 || lows[size - 1] != (char) sorted[i]) {
+                    lows[size++] = (char) sorted[i];
+                }
+            }
+            keys.add(key);
+            containers.add(Container.of(Arrays.copyOf(lows, size)));
+        }
+        return create(keys, containers);
+    }
+
+    private static CompressedIntSet create(final List<Character> keys, final List<Container> containers) {
+        if (keys.isEmpty()) {
+            return EMPTY;
+        }
+        final char[] array = new char[keys.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = keys.get(i);
+        }
+        return new CompressedIntSet(array, containers.toArray(Container[]::new));
+    }
+
+    private static char high(final int value) {
+        return (char) ((value >>> 16) ^ 0x8000);
+    }
+
+    private static int value(final char key, final int low) {
+        return (key ^ 0x8000) << 16 | low;
+    }
+
+    private int containerIndex(final char key) {
+        return Arrays.binarySearch(keys, key);
+    }
+
+    public boolean contains(final int value) {
+        final int index = containerIndex(high(value));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return o instanceof Integer value && contains(value.intValue());
+    }
+
+    @Override
+    public int size() {
+        return counts[containers.length];
+    }
+
+    /**
+     * Returns the number of values less than the specified one.
+     *
+     * @param value value to rank
+     * @return number of smaller values, the index of the value if it is in the set
+     */
+    public int rank(final int value) {
+        final int index = containerIndex(high(value));
+        return index >= 0
+                ? counts[index] + containers[index].rank((char) value)
+                : counts[-index - 1];
+    }
+
+    /**
+     * Returns the value with the specified number of smaller values.
+     *
+     * @param index index of the value in the sorted order
+     * @return the value
+     * @throws IndexOutOfBoundsException if the index is negative or not less than the size
+     */
+    public int select(final int index) {
+        Objects.checkIndex(index, size());
+        int container = Arrays.binarySearch(counts, index);
+        // an index equal to a count is the first value of that container, there are no empty containers
+        container = container >= 0 ? container : -container - 2;
+        return value(keys[container], containers[container].select(index - counts[container]));
+    }
+
+    /**
+     * Returns the set of the values contained in either set.
+     *
+     * @param other set to unite with
+     * @return union of the sets
+     */
+    public CompressedIntSet union(final CompressedIntSet other) {
+        final List<Character> resultKeys = new ArrayList<>();
+        final List<Container> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || i < keys.length && keys[i] < other.keys[j]) {
+                resultKeys.add(keys[i]);
+                result.add(containers[i++]);
+            } else if (i == keys.length || other.keys[j] < keys[i]) {
+                resultKeys.add(other.keys[j]);
+                result.add(other.containers[j++]);
+            } else {
+                resultKeys.add(keys[i]);
+                result.add(containers[i++].or(other.containers[j++]));
+            }
+        }
+        return create(resultKeys, result);
+    }
+
+    /**
+     * Returns the set of the values contained in both sets.
+     *
+     * @param other set to intersect with
+     * @return intersection of the sets
+     */
+    public CompressedIntSet intersection(final CompressedIntSet other) {
+        final List<Character> resultKeys = new ArrayList<>();
+        final List<Container> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (other.keys[j] < keys[i]) {
+                j++;
+            } else {
+                final Container and = containers[i++].and(other.containers[j++]);
+                if (and != null) {
+                    resultKeys.add(keys[i - 1]);
+                    result.add(and);
+                }
+            }
+        }
+        return create(resultKeys, result);
+    }
+
+    /**
+     * Returns an estimate of the memory taken by the values, without the object headers.
+     *
+     * @return size in bytes
+     */
+    public long sizeInBytes() {
+        long bytes = (long) keys.length * (Character.BYTES + 2 * Integer.BYTES);
+        for (final Container container : containers) {
+            bytes += container.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int container;
+            private PrimitiveIterator.OfInt lows = containers.length == 0 ? null : containers[0].iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (lows != null && !lows.hasNext()) {
+                    container++;
+                    lows = container < containers.length ? containers[container].iterator() : null;
+                }
+                return lows != null;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("no more elements");
+                }
+                return value(keys[container], lows.nextInt());
+            }
+        };
+    }
+
+    /**
+     * Low 16 bits of the values sharing the high bits.
+     */
+    private abstract static class Container {
+        private static Container of(final char[] lows) {
+            return lows.length <= ARRAY_LIMIT ? new ArrayContainer(lows) : BitmapContainer.of(lows);
+        }
+
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        /**
+         * Returns the number of values less than the low bits.
+         */
+        abstract int rank(char low);
+
+        abstract char select(int index);
+
+        abstract Container or(Container other);
+
+        /**
+         * Returns the intersection or {@code null} if it is empty.
+         */
+        abstract Container and(Container other);
+
+        abstract long sizeInBytes();
+
+        abstract PrimitiveIterator.OfInt iterator();
+    }
+
+    private static final class ArrayContainer extends Container {
+        private final char[] lows;
+
+        private ArrayContainer(final char[] lows) {
+            this.lows = lows;
+        }
+
+        @Override
+        int cardinality() {
+            return lows.length;
+        }
+
+        @Override
+        boolean contains(final char low) {
+            return Arrays.binarySearch(lows, low) >= 0;
+        }
+
+        @Override
+        int rank(final char low) {
+            final int index = Arrays.binarySearch(lows, low);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        @Override
+        char select(final int index) {
+            return lows[index];
+        }
+
+        @Override
+        Container or(final Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                return bitmap.or(this);
+            }
+            final char[] others = ((ArrayContainer) other).lows;
+            final char[] merged = new char[lows.length + others.length];
+            int i = 0;
+            int j = 0;
+            int size = 0;
+            while (i < lows.length || j < others.length) {
+                if (j == others.length || i < lows.length && lows[i] < others[j]) {
+                    merged[size++] = lows[i++];
+                } else if (i == lows.length || others[j] < lows[i]) {
+                    merged[size++] = others[j++];
+                } else {
+                    merged[size++] = lows[i++];
+                    j++;
+                }
+            }
+            return Container.of(Arrays.copyOf(merged, size));
+        }
+
+        @Override
+        Container and(final Container other) {
+            final char[] common = new char[lows.length];
+            int size = 0;
+            if (other instanceof BitmapContainer bitmap) {
+                for (final char low : lows) {
+                    if (bitmap.contains(low)) {
+                        common[size++] = low;
+                    }
+                }
+            } else {
+                final char[] others = ((ArrayContainer) other).lows;
+                for (int i = 0, j = 0; i < lows.length && j < others.length; ) {
+                    if (lows[i] < others[j]) {
+                        i++;
+                    } else if (others[j] < lows[i]) {
+                        j++;
+                    } else {
+                        common[size++] = lows[i++];
+                        j++;
+                    }
+                }
+            }
+            return size == 0 ? null : new ArrayContainer(Arrays.copyOf(common, size));
+        }
+
+        @Override
+        long sizeInBytes() {
+            return (long) lows.length * Character.BYTES;
+        }
+
+        @Override
+        PrimitiveIterator.OfInt iterator() {
+            return new PrimitiveIterator.OfInt() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < lows.length;
+                }
+
+                @Override
+                public int nextInt() {
+                    return lows[index++];
+                }
+            };
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        // blockCounts[i] is the number of values in the blocks of words before the i-th one
+        private final int[] blockCounts = new int[BLOCKS + 1];
+        private final int cardinality;
+
+        private BitmapContainer(final long[] words) {
+            this.words = words;
+            for (int block = 0; block < BLOCKS; block++) {
+                int count = 0;
+                for (int i = block * BLOCK_WORDS; i < (block + 1) * BLOCK_WORDS; i++) {
+                    count += Long.bitCount(words[i]);
+                }
+                blockCounts[block + 1] = blockCounts[block] + count;
+            }
+            cardinality = blockCounts[BLOCKS];
+        }
+
+        private static BitmapContainer of(final char[] lows) {
+            final long[] words = new long[BITMAP_WORDS];
+            for (final char low : lows) {
+                words[low >>> 6] |= 1L << low;
+            }
+            return new BitmapContainer(words);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(final char low) {
+            return (words[low >>> 6] & 1L << low) != 0;
+        }
+
+        @Override
+        int rank(final char low) {
+            final int word = low >>> 6;
+            int rank = blockCounts[word / BLOCK_WORDS];
+            for (int i = word / BLOCK_WORDS * BLOCK_WORDS; i < word; i++) {
+                rank += Long.bitCount(words[i]);
+            }
+            return rank + Long.bitCount(words[word] & (1L << low) - 1);
+        }
+
+        @Override
+        char select(int index) {
+            int block = Arrays.binarySearch(blockCounts, index);
+            // a count equal to the index may be shared by empty blocks, the last of them is taken
+            if (block >= 0) {
+                while (blockCounts[block + 1] == index) {
+                    block++;
+                }
+            } else {
+                block = -block - 2;
+            }
+            index -= blockCounts[block];
+            int word = block * BLOCK_WORDS;
+            while (index >= Long.bitCount(words[word])) {
+                index -= Long.bitCount(words[word++]);
+            }
+            long bits = words[word];
+            for (; index > 0; index--) {
+                bits &= bits - 1;
+            }
+            return (char) (word << 6 | Long.numberOfTrailingZeros(bits));
+        }
+
+        @Override
+        Container or(final Container other) {
+            final long[] result = words.clone();
+            if (other instanceof BitmapContainer bitmap) {
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] |= bitmap.words[i];
+                }
+            } else {
+                for (final char low : ((ArrayContainer) other).lows) {
+                    result[low >>> 6] |= 1L << low;
+                }
+            }
+            return new BitmapContainer(result);
+        }
+
+        @Override
+        Container and(final Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            final long[] result = words.clone();
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] &= ((BitmapContainer) other).words[i];
+            }
+            final BitmapContainer bitmap = new BitmapContainer(result);
+            if (bitmap.cardinality == 0) {
+                return null;
+            }
+            return bitmap.cardinality > ARRAY_LIMIT ? bitmap : new ArrayContainer(bitmap.toLows());
+        }
+
+        private char[] toLows() {
+            final char[] lows = new char[cardinality];
+            final PrimitiveIterator.OfInt iterator = iterator();
+            for (int i = 0; i < lows.length; i++) {
+                lows[i] = (char) iterator.nextInt();
+            }
+            return lows;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return (long) BITMAP_WORDS * Long.BYTES + (long) (BLOCKS + 1) * Integer.BYTES;
+        }
+
+        @Override
+        PrimitiveIterator.OfInt iterator() {
+            return new PrimitiveIterator.OfInt() {
+                private int word;
+                private long bits = words[0];
+
+                @Override
+                public boolean hasNext() {
+                    while (bits == 0 && word + 1 < BITMAP_WORDS) {
+                        bits = words[++word];
+                    }
+                    return bits != 0;
+                }
+
+                @Override
+                public int nextInt() {
+                    hasNext();
+                    final int low = word << 6 | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    return low;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import org.junit.*;
+
+import java.util.*;
+
+public class CompressedIntSetTest {
+    private static final int TESTS = 15;
+
+    private final Random random = new Random(239);
+
+    /**
+     * Values from a few containers, each sparse, dense or full, including the extreme ones.
+     */
+    private int[] randomValues() {
+        final int containers = random.nextInt(5);
+        final int[][] parts = new int[containers + 1][];
+        for (int c = 0; c < containers; c++) {
+            final int high = switch (random.nextInt(4)) {
+                case 0 -> Short.MIN_VALUE;
+                case 1 -> Short.MAX_VALUE;
+                default -> random.nextInt(64) - 32;
+            };
+            final int count = switch (random.nextInt(4)) {
+                case 0 -> random.nextInt(10);
+                case 1 -> 4000 + random.nextInt(200);
+                case 2 -> 20_000 + random.nextInt(40_000);
+                default -> 1 << 16;
+            };
+            parts[c] = random.ints(count, 0, 1 << 16).map(low -> high << 16 | low).toArray();
+        }
+        parts[containers] = random.ints(random.nextInt(100)).toArray();
+        return Arrays.stream(parts).flatMapToInt(Arrays::stream).toArray();
+    }
+
+    private static TreeSet<Integer> treeSet(final int[] values) {
+        final TreeSet<Integer> set = new TreeSet<>();
+        for (final int value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    private static int rank(final List<Integer> sorted, final int value) {
+        final int index = Collections.binarySearch(sorted, value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private void check(final String context, final TreeSet<Integer> expected, final CompressedIntSet actual) {
+        final List<Integer> sorted = new ArrayList<>(expected);
+        Assert.assertEquals(context + ": size", expected.size(), actual.size());
+        Assert.assertEquals(context + ": values", sorted, new ArrayList<>(actual));
+        Assert.assertEquals(context + ": set", expected, actual);
+        for (int i = 0; i < 200 && !sorted.isEmpty(); i++) {
+            final int index = random.nextInt(sorted.size());
+            final int value = sorted.get(index);
+            Assert.assertEquals(context + ": select " + index, value, actual.select(index));
+            Assert.assertEquals(context + ": rank " + value, index, actual.rank(value));
+            Assert.assertTrue(context + ": contains " + value, actual.contains(value));
+            final int near = value + random.nextInt(7) - 3;
+            Assert.assertEquals(context + ": contains " + near, expected.contains(near), actual.contains(near));
+            Assert.assertEquals(context + ": rank " + near, rank(sorted, near), actual.rank(near));
+        }
+        for (final int value : new int[]{Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE}) {
+            Assert.assertEquals(context + ": contains " + value, expected.contains(value), actual.contains(value));
+            Assert.assertEquals(context + ": rank " + value, rank(sorted, value), actual.rank(value));
+        }
+        Assert.assertThrows(IndexOutOfBoundsException.class, () -> actual.select(sorted.size()));
+    }
+
+    @Test
+    public void test01() {
+        for (int test = 0; test < TESTS; test++) {
+            final int[] values = randomValues();
+            check("set of " + values.length + " values", treeSet(values), CompressedIntSet.of(values));
+        }
+        check("empty set", new TreeSet<>(), CompressedIntSet.of());
+    }
+
+    @Test
+    public void test02() {
+        for (int test = 0; test < TESTS; test++) {
+            final int[] a = randomValues();
+            final int[] b = randomValues();
+            final CompressedIntSet first = CompressedIntSet.of(a);
+            final CompressedIntSet second = CompressedIntSet.of(b);
+            final TreeSet<Integer> union = treeSet(a);
+            union.addAll(treeSet(b));
+            check("union", union, first.union(second));
+            check("union in other order", union, second.union(first));
+            final TreeSet<Integer> intersection = treeSet(a);
+            intersection.retainAll(treeSet(b));
+            check("intersection", intersection, first.intersection(second));
+            check("intersection in other order", intersection, second.intersection(first));
+            check("intersection with itself", treeSet(a), first.intersection(first));
+        }
+    }
+
+    @Test
+    public void test03() {
+        // every other value of a container, so the intersection of two bitmaps is empty
+        final int[] even = new int[1 << 15];
+        final int[] odd = new int[1 << 15];
+        for (int i = 0; i < even.length; i++) {
+            even[i] = 2 * i;
+            odd[i] = 2 * i + 1;
+        }
+        Assert.assertTrue("expected empty intersection",
+                CompressedIntSet.of(even).intersection(CompressedIntSet.of(odd)).isEmpty());
+        final CompressedIntSet full = CompressedIntSet.of(even).union(CompressedIntSet.of(odd));
+        Assert.assertEquals("expected full container", 1 << 16, full.size());
+        Assert.assertTrue("expected at most one bit per value of a dense container",
+                full.sizeInBytes() <= (1 << 16) / Byte.SIZE + 1024);
+        Assert.assertEquals("expected the last value", (1 << 16) - 1, full.select((1 << 16) - 1));
+    }
+}
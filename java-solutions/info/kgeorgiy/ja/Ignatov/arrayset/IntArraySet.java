@@ -0,0 +1,308 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Sorted set of {@code int} values in the natural order, stored in a sorted {@code int[]} without boxing.
+ * Subsets are windows over the array of the parent set, so they take constant time and memory.
+ * The set is immutable.
+ * <p>
+ * For sets much larger than the processor caches {@link #withSearchLayout()} adds a copy of the elements
+ * in the order of a static B-tree with a cache line of keys in every node, so a search misses the cache
+ * once per node instead of once per halving of the range.
+ *
+ * @author Ignatov Nikolay
+ */
+public class IntArraySet extends AbstractSet<Integer> implements SortedSet<Integer> {
+    private final int[] elements;
+    private final int from;
+    private final int to;
+    private final SearchLayout layout;
+
+    public IntArraySet() {
+        this(new int[0], 0, 0, null);
+    }
+
+    public IntArraySet(final int... values) {
+        elements = sortedUnique(values.clone());
+        from = 0;
+        to = elements.length;
+        layout = null;
+    }
+
+    public IntArraySet(final Collection<Integer> collection) {
+        elements = sortedUnique(collection.stream().mapToInt(Integer::intValue).toArray());
+        from = 0;
+        to = elements.length;
+        layout = null;
+    }
+
+    private IntArraySet(final int[] elements, final int from, final int to, final SearchLayout layout) {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.layout = layout;
+    }
+
+    private static int[] sortedUnique(final int[] values) {
+        Arrays.sort(values);
+        int size = 0;
+        for (final int value : values) {
+            if (size == 0 || values[size - 1] != value) {
+                values[size++] = value;
+            }
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns the index of the first element not less than the key.
+     */
+    private int lowerBound(final int key) {
+        if (layout != null) {
+            // the layout may cover a wider range than this view
+            return Math.max(from, Math.min(to, layout.lowerBound(key)));
+        }
+        final int index = Arrays.binarySearch(elements, from, to, key);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    private IntArraySet window(final int fromIndex, final int toIndex) {
+        return new IntArraySet(elements, fromIndex, Math.max(fromIndex, toIndex), layout);
+    }
+
+    /**
+     * Returns the same set searched through the B-tree layout.
+     * The layout takes linear time to build and about twice the memory of the elements.
+     * Views of the returned set share the layout. Iteration still uses the sorted array.
+     *
+     * @return set with the search layout
+     */
+    public IntArraySet withSearchLayout() {
+        return new IntArraySet(elements, from, to, SearchLayout.build(elements, from, to));
+    }
+
+    public boolean contains(final int value) {
+        if (layout != null) {
+            return layout.contains(value, from, to);
+        }
+        return Arrays.binarySearch(elements, from, to, value) >= 0;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return o instanceof Integer value && contains(value.intValue());
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public int nextInt() {
+                if (index >= to) {
+                    throw new NoSuchElementException("no more elements");
+                }
+                return elements[index++];
+            }
+        };
+    }
+
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return Spliterators.spliterator(elements, from, to,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.IMMUTABLE
+                        | Spliterator.NONNULL);
+    }
+
+    public void forEachInt(final IntConsumer action) {
+        for (int i = from; i < to; i++) {
+            action.accept(elements[i]);
+        }
+    }
+
+    public IntStream intStream() {
+        return Arrays.stream(elements, from, to);
+    }
+
+    public int[] toIntArray() {
+        return Arrays.copyOfRange(elements, from, to);
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return null;
+    }
+
+    public int firstInt() throws NoSuchElementException {
+        if (!isEmpty()) {
+            return elements[from];
+        }
+        throw new NoSuchElementException("first element does not exist");
+    }
+
+    public int lastInt() throws NoSuchElementException {
+        if (!isEmpty()) {
+            return elements[to - 1];
+        }
+        throw new NoSuchElementException("last element does not exist");
+    }
+
+    @Override
+    public Integer first() throws NoSuchElementException {
+        return firstInt();
+    }
+
+    @Override
+    public Integer last() throws NoSuchElementException {
+        return lastInt();
+    }
+
+    public IntArraySet headSet(final int toElement) {
+        return window(from, lowerBound(toElement));
+    }
+
+    public IntArraySet tailSet(final int fromElement) {
+        return window(lowerBound(fromElement), to);
+    }
+
+    public IntArraySet subSet(final int fromElement, final int toElement) throws IllegalArgumentException {
+        if (fromElement <= toElement) {
+            return window(lowerBound(fromElement), lowerBound(toElement));
+        }
+        throw new IllegalArgumentException("illegal arguments for subset");
+    }
+
+    @Override
+    public IntArraySet headSet(final Integer toElement) {
+        return headSet(toElement.intValue());
+    }
+
+    @Override
+    public IntArraySet tailSet(final Integer fromElement) {
+        return tailSet(fromElement.intValue());
+    }
+
+    @Override
+    public IntArraySet subSet(final Integer fromElement, final Integer toElement) throws IllegalArgumentException {
+        return subSet(fromElement.intValue(), toElement.intValue());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o instanceof IntArraySet other) {
+            return Arrays.equals(elements, from, to, other.elements, other.from, other.to);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash += Integer.hashCode(elements[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Elements of a range in the order of a static B-tree with {@code BLOCK} keys in a node.
+     * The node {@code k} takes the positions {@code [k * BLOCK, (k + 1) * BLOCK)} and has the children
+     * {@code k * (BLOCK + 1) + 1 ... k * (BLOCK + 1) + BLOCK + 1}, so the tree needs no pointers.
+     * The last nodes are padded by the maximal value.
+     *
+     * @param keys  elements and padding in the node order
+     * @param ranks indices of the elements in the sorted array, {@code to} for the padding
+     * @param from  first index of the range
+     * @param to    end of the range
+     */
+    private record SearchLayout(int[] keys, int[] ranks, int from, int to) {
+        // a cache line of keys
+        private static final int BLOCK = 64 / Integer.BYTES;
+
+        private static SearchLayout build(final int[] elements, final int from, final int to) {
+            final int size = (to - from + BLOCK - 1) / BLOCK * BLOCK;
+            final SearchLayout layout = new SearchLayout(new int[size], new int[size], from, to);
+            layout.fill(elements, from, 0);
+            return layout;
+        }
+
+        private static int child(final int node, final int index) {
+            return node * (BLOCK + 1) + index + 1;
+        }
+
+        /**
+         * Places the elements starting from {@code index} to the subtree of the node in the sorted order.
+         *
+         * @return index of the first element not placed
+         */
+        private int fill(final int[] elements, int index, final int node) {
+            if (node * BLOCK < keys.length) {
+                for (int i = 0; i < BLOCK; i++) {
+                    index = fill(elements, index, child(node, i));
+                    final int position = node * BLOCK + i;
+                    if (index < to) {
+                        keys[position] = elements[index];
+                        ranks[position] = index++;
+                    } else {
+                        keys[position] = Integer.MAX_VALUE;
+                        ranks[position] = to;
+                    }
+                }
+                index = fill(elements, index, child(node, BLOCK));
+            }
+            return index;
+        }
+
+        /**
+         * Returns the position of the first key not less than the key, -1 if there is no such key.
+         */
+        private int search(final int key) {
+            int result = -1;
+            int node = 0;
+            while (node * BLOCK < keys.length) {
+                final int offset = node * BLOCK;
+                // counting instead of stopping at the first greater key leaves no branches to mispredict
+                int less = 0;
+                for (int i = 0; i < BLOCK; i++) {
+                    less += keys[offset + i] < key ? 1 : 0;
+                }
+                if (less < BLOCK) {
+                    result = offset + less;
+                }
+                node = child(node, less);
+            }
+            return result;
+        }
+
+        private int lowerBound(final int key) {
+            final int position = search(key);
+            return position < 0 ? to : ranks[position];
+        }
+
+        private boolean contains(final int key, final int viewFrom, final int viewTo) {
+            final int position = search(key);
+            if (position < 0 || keys[position] != key) {
+                return false;
+            }
+            // the rank is another cache miss, it is needed only for the padding value and for narrower views
+            if (key == Integer.MAX_VALUE || viewFrom != from || viewTo != to) {
+                return viewFrom <= ranks[position] && ranks[position] < viewTo;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Order-preserving encoding of keys into a fixed number of bytes:
+ * the unsigned lexicographic order of the encodings is the natural order of the keys.
+ *
+ * @param <E> type of the keys
+ * @author Ignatov Nikolay
+ */
+public interface KeyCodec<E> {
+    /**
+     * {@code long} keys as 8 big-endian bytes with the sign bit flipped.
+     */
+    KeyCodec<Long> LONG = new KeyCodec<>() {
+        @Override
+        public int width() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void encode(final Long key, final ByteBuffer buffer, final int offset) {
+            buffer.putLong(offset, key ^ Long.MIN_VALUE);
+        }
+
+        @Override
+        public Long decode(final ByteBuffer buffer, final int offset) {
+            return buffer.getLong(offset) ^ Long.MIN_VALUE;
+        }
+    };
+
+    /**
+     * {@link UUID} keys as the most and then the least significant halves, both with the sign bit flipped,
+     * like {@link UUID#compareTo} compares them.
+     */
+    KeyCodec<UUID> UUID = new KeyCodec<>() {
+        @Override
+        public int width() {
+            return 2 * Long.BYTES;
+        }
+
+        @Override
+        public void encode(final UUID key, final ByteBuffer buffer, final int offset) {
+            buffer.putLong(offset, key.getMostSignificantBits() ^ Long.MIN_VALUE);
+            buffer.putLong(offset + Long.BYTES, key.getLeastSignificantBits() ^ Long.MIN_VALUE);
+        }
+
+        @Override
+        public UUID decode(final ByteBuffer buffer, final int offset) {
+            return new UUID(
+                    buffer.getLong(offset) ^ Long.MIN_VALUE,
+                    buffer.getLong(offset + Long.BYTES) ^ Long.MIN_VALUE
+            );
+        }
+    };
+
+    /**
+     * Returns the number of bytes of an encoded key.
+     *
+     * @return width of the keys
+     */
+    int width();
+
+    /**
+     * Writes the key to the buffer without changing its position.
+     *
+     * @param key    key to encode
+     * @param buffer big-endian buffer
+     * @param offset index of the first byte
+     */
+    void encode(E key, ByteBuffer buffer, int offset);
+
+    /**
+     * Reads the key from the buffer without changing its position.
+     *
+     * @param buffer big-endian buffer
+     * @param offset index of the first byte
+     * @return decoded key
+     */
+    E decode(ByteBuffer buffer, int offset);
+}
@@ -0,0 +1,308 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * Sorted set of {@code long} values in the natural order, stored in a sorted {@code long[]} without boxing.
+ * Subsets are windows over the array of the parent set, so they take constant time and memory.
+ * The set is immutable.
+ * <p>
+ * For sets much larger than the processor caches {@link #withSearchLayout()} adds a copy of the elements
+ * in the order of a static B-tree with a cache line of keys in every node, so a search misses the cache
+ * once per node instead of once per halving of the range.
+ *
+ * @author Ignatov Nikolay
+ */
+public class LongArraySet extends AbstractSet<Long> implements SortedSet<Long> {
+    private final long[] elements;
+    private final int from;
+    private final int to;
+    private final SearchLayout layout;
+
+    public LongArraySet() {
+        this(new long[0], 0, 0, null);
+    }
+
+    public LongArraySet(final long... values) {
+        elements = sortedUnique(values.clone());
+        from = 0;
+        to = elements.length;
+        layout = null;
+    }
+
+    public LongArraySet(final Collection<Long> collection) {
+        elements = sortedUnique(collection.stream().mapToLong(Long::longValue).toArray());
+        from = 0;
+        to = elements.length;
+        layout = null;
+    }
+
+    private LongArraySet(final long[] elements, final int from, final int to, final SearchLayout layout) {
+        this.elements = elements;
+        this.from = from;
+        this.to = to;
+        this.layout = layout;
+    }
+
+    private static long[] sortedUnique(final long[] values) {
+        Arrays.sort(values);
+        int size = 0;
+        for (final long value : values) {
+            if (size == 0 || values[size - 1] != value) {
+                values[size++] = value;
+            }
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns the index of the first element not less than the key.
+     */
+    private int lowerBound(final long key) {
+        if (layout != null) {
+            // the layout may cover a wider range than this view
+            return Math.max(from, Math.min(to, layout.lowerBound(key)));
+        }
+        final int index = Arrays.binarySearch(elements, from, to, key);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    private LongArraySet window(final int fromIndex, final int toIndex) {
+        return new LongArraySet(elements, fromIndex, Math.max(fromIndex, toIndex), layout);
+    }
+
+    /**
+     * Returns the same set searched through the B-tree layout.
+     * The layout takes linear time to build and about twice the memory of the elements.
+     * Views of the returned set share the layout. Iteration still uses the sorted array.
+     *
+     * @return set with the search layout
+     */
+    public LongArraySet withSearchLayout() {
+        return new LongArraySet(elements, from, to, SearchLayout.build(elements, from, to));
+    }
+
+    public boolean contains(final long value) {
+        if (layout != null) {
+            return layout.contains(value, from, to);
+        }
+        return Arrays.binarySearch(elements, from, to, value) >= 0;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return o instanceof Long value && contains(value.longValue());
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public long nextLong() {
+                if (index >= to) {
+                    throw new NoSuchElementException("no more elements");
+                }
+                return elements[index++];
+            }
+        };
+    }
+
+    @Override
+    public Spliterator.OfLong spliterator() {
+        return Spliterators.spliterator(elements, from, to,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.IMMUTABLE
+                        | Spliterator.NONNULL);
+    }
+
+    public void forEachLong(final LongConsumer action) {
+        for (int i = from; i < to; i++) {
+            action.accept(elements[i]);
+        }
+    }
+
+    public LongStream longStream() {
+        return Arrays.stream(elements, from, to);
+    }
+
+    public long[] toLongArray() {
+        return Arrays.copyOfRange(elements, from, to);
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        return null;
+    }
+
+    public long firstLong() throws NoSuchElementException {
+        if (!isEmpty()) {
+            return elements[from];
+        }
+        throw new NoSuchElementException("first element does not exist");
+    }
+
+    public long lastLong() throws NoSuchElementException {
+        if (!isEmpty()) {
+            return elements[to - 1];
+        }
+        throw new NoSuchElementException("last element does not exist");
+    }
+
+    @Override
+    public Long first() throws NoSuchElementException {
+        return firstLong();
+    }
+
+    @Override
+    public Long last() throws NoSuchElementException {
+        return lastLong();
+    }
+
+    public LongArraySet headSet(final long toElement) {
+        return window(from, lowerBound(toElement));
+    }
+
+    public LongArraySet tailSet(final long fromElement) {
+        return window(lowerBound(fromElement), to);
+    }
+
+    public LongArraySet subSet(final long fromElement, final long toElement) throws IllegalArgumentException {
+        if (fromElement <= toElement) {
+            return window(lowerBound(fromElement), lowerBound(toElement));
+        }
+        throw new IllegalArgumentException("illegal arguments for subset");
+    }
+
+    @Override
+    public LongArraySet headSet(final Long toElement) {
+        return headSet(toElement.longValue());
+    }
+
+    @Override
+    public LongArraySet tailSet(final Long fromElement) {
+        return tailSet(fromElement.longValue());
+    }
+
+    @Override
+    public LongArraySet subSet(final Long fromElement, final Long toElement) throws IllegalArgumentException {
+        return subSet(fromElement.longValue(), toElement.longValue());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o instanceof LongArraySet other) {
+            return Arrays.equals(elements, from, to, other.elements, other.from, other.to);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash += Long.hashCode(elements[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Elements of a range in the order of a static B-tree with {@code BLOCK} keys in a node.
+     * The node {@code k} takes the positions {@code [k * BLOCK, (k + 1) * BLOCK)} and has the children
+     * {@code k * (BLOCK + 1) + 1 ... k * (BLOCK + 1) + BLOCK + 1}, so the tree needs no pointers.
+     * The last nodes are padded by the maximal value.
+     *
+     * @param keys  elements and padding in the node order
+     * @param ranks indices of the elements in the sorted array, {@code to} for the padding
+     * @param from  first index of the range
+     * @param to    end of the range
+     */
+    private record SearchLayout(long[] keys, int[] ranks, int from, int to) {
+        // a cache line of keys
+        private static final int BLOCK = 64 / Long.BYTES;
+
+        private static SearchLayout build(final long[] elements, final int from, final int to) {
+            final int size = (to - from + BLOCK - 1) / BLOCK * BLOCK;
+            final SearchLayout layout = new SearchLayout(new long[size], new int[size], from, to);
+            layout.fill(elements, from, 0);
+            return layout;
+        }
+
+        private static int child(final int node, final int index) {
+            return node * (BLOCK + 1) + index + 1;
+        }
+
+        /**
+         * Places the elements starting from {@code index} to the subtree of the node in the sorted order.
+         *
+         * @return index of the first element not placed
+         */
+        private int fill(final long[] elements, int index, final int node) {
+            if (node * BLOCK < keys.length) {
+                for (int i = 0; i < BLOCK; i++) {
+                    index = fill(elements, index, child(node, i));
+                    final int position = node * BLOCK + i;
+                    if (index < to) {
+                        keys[position] = elements[index];
+                        ranks[position] = index++;
+                    } else {
+                        keys[position] = Long.MAX_VALUE;
+                        ranks[position] = to;
+                    }
+                }
+                index = fill(elements, index, child(node, BLOCK));
+            }
+            return index;
+        }
+
+        /**
+         * Returns the position of the first key not less than the key, -1 if there is no such key.
+         */
+        private int search(final long key) {
+            int result = -1;
+            int node = 0;
+            while (node * BLOCK < keys.length) {
+                final int offset = node * BLOCK;
+                // counting instead of stopping at the first greater key leaves no branches to mispredict
+                int less = 0;
+                for (int i = 0; i < BLOCK; i++) {
+                    less += keys[offset + i] < key ? 1 : 0;
+                }
+                if (less < BLOCK) {
+                    result = offset + less;
+                }
+                node = child(node, less);
+            }
+            return result;
+        }
+
+        private int lowerBound(final long key) {
+            final int position = search(key);
+            return position < 0 ? to : ranks[position];
+        }
+
+        private boolean contains(final long key, final int viewFrom, final int viewTo) {
+            final int position = search(key);
+            if (position < 0 || keys[position] != key) {
+                return false;
+            }
+            // the rank is another cache miss, it is needed only for the padding value and for narrower views
+            if (key == Long.MAX_VALUE || viewFrom != from || viewTo != to) {
+                return viewFrom <= ranks[position] && ranks[position] < viewTo;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import org.junit.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class LongArraySetTest {
+    private static final int TESTS = 100;
+    private static final int MAX_SIZE = 300;
+    private static final int MAX_VALUE = 1000;
+
+    private final Random random = new Random(239);
+
+    private long randomValue() {
+        return switch (random.nextInt(20)) {
+            case 0 -> Long.MIN_VALUE;
+            case 1 -> Long.MAX_VALUE;
+            // beyond the range of int
+            case 2 -> (1L << 40) + random.nextInt(3);
+            default -> random.nextLong(2L * MAX_VALUE) - MAX_VALUE;
+        };
+    }
+
+    private long[] randomValues() {
+        final long[] values = new long[random.nextInt(MAX_SIZE)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = randomValue();
+        }
+        return values;
+    }
+
+    private static TreeSet<Long> treeSet(final long[] values) {
+        return Arrays.stream(values).boxed().collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private void check(final String context, final NavigableSet<Long> expected, final LongArraySet actual) {
+        final List<Long> elements = new ArrayList<>(expected);
+        Assert.assertEquals(context + ": size", expected.size(), actual.size());
+        Assert.assertEquals(context + ": elements", elements, new ArrayList<>(actual));
+        Assert.assertEquals(context + ": stream", elements, actual.longStream().boxed().toList());
+        Assert.assertEquals(context + ": array", elements, Arrays.stream(actual.toLongArray()).boxed().toList());
+        Assert.assertEquals(context + ": equals", expected, actual);
+        Assert.assertEquals(context + ": hashCode", expected.hashCode(), actual.hashCode());
+        if (!expected.isEmpty()) {
+            Assert.assertEquals(context + ": first", expected.first(), actual.first());
+            Assert.assertEquals(context + ": last", expected.last(), actual.last());
+        } else {
+            Assert.assertThrows(NoSuchElementException.class, actual::first);
+        }
+        for (int i = 0; i < 50; i++) {
+            final long value = randomValue();
+            Assert.assertEquals(context + ": contains " + value, expected.contains(value), actual.contains(value));
+            final LongArraySet tail = actual.tailSet(value);
+            Assert.assertEquals(context + ": ceiling " + value, expected.ceiling(value),
+                    tail.isEmpty() ? null : tail.first());
+            final LongArraySet head = value == Long.MAX_VALUE ? actual : actual.headSet(value + 1);
+            Assert.assertEquals(context + ": floor " + value, expected.floor(value),
+                    head.isEmpty() ? null : head.last());
+        }
+        for (final Long value : expected) {
+            Assert.assertTrue(context + ": contains " + value, actual.contains(value));
+        }
+    }
+
+    private void checkViews(final String context, final NavigableSet<Long> set, final LongArraySet actual) {
+        check(context, set, actual);
+        NavigableSet<Long> expected = set;
+        LongArraySet view = actual;
+        final StringBuilder path = new StringBuilder(context);
+        for (int depth = 0; depth < 5; depth++) {
+            final long a = randomValue();
+            final long b = randomValue();
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    path.append(".headSet(").append(a).append(")");
+                    expected = new TreeSet<>(expected.headSet(a, false));
+                    view = view.headSet(a);
+                }
+                case 1 -> {
+                    path.append(".tailSet(").append(a).append(")");
+                    expected = new TreeSet<>(expected.tailSet(a, true));
+                    view = view.tailSet(a);
+                }
+                default -> {
+                    path.append(".subSet(").append(Math.min(a, b)).append(", ").append(Math.max(a, b)).append(")");
+                    expected = new TreeSet<>(expected.subSet(Math.min(a, b), true, Math.max(a, b), false));
+                    view = view.subSet(Math.min(a, b), Math.max(a, b));
+                }
+            }
+            check(path.toString(), expected, view);
+        }
+    }
+
+    @Test
+    public void test01() {
+        for (int test = 0; test < TESTS; test++) {
+            final long[] values = randomValues();
+            checkViews("set", treeSet(values), new LongArraySet(values));
+            checkViews("set of a collection", treeSet(values), new LongArraySet(treeSet(values)));
+        }
+        check("empty set", new TreeSet<>(), new LongArraySet());
+    }
+
+    @Test
+    public void test02() {
+        final int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT
+                | Spliterator.SIZED | Spliterator.SUBSIZED;
+        for (int test = 0; test < TESTS; test++) {
+            final LongArraySet set = new LongArraySet(randomValues()).tailSet(randomValue());
+            final List<Long> elements = new ArrayList<>(set);
+            final Spliterator.OfLong spliterator = set.spliterator();
+            Assert.assertEquals("characteristics", characteristics, spliterator.characteristics() & characteristics);
+            Assert.assertNull("expected natural order", spliterator.getComparator());
+            Assert.assertEquals("expected the smallest elements", elements.subList(0, Math.min(3, elements.size())),
+                    set.parallelStream().limit(3).toList());
+            Assert.assertEquals("expected the first element", elements.stream().findFirst(),
+                    set.parallelStream().findFirst());
+        }
+    }
+
+    @Test
+    public void test03() {
+        // sizes around the multiples of the node size and deeper trees
+        for (final int size : new int[]{0, 1, 7, 8, 9, 15, 16, 17, 72, 73, 153, 1000, 5000}) {
+            for (int test = 0; test < 10; test++) {
+                final long[] values = new long[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = randomValue();
+                }
+                final LongArraySet plain = new LongArraySet(values);
+                final LongArraySet layout = plain.withSearchLayout();
+                checkViews("layout of " + size, treeSet(values), layout);
+                for (final Long value : plain) {
+                    for (final long near : new long[]{value - 1, value, value + 1}) {
+                        Assert.assertEquals("contains " + near, plain.contains(near), layout.contains(near));
+                        Assert.assertEquals("ceiling " + near, plain.tailSet(near), layout.tailSet(near));
+                    }
+                }
+
+                final long a = randomValue();
+                final long b = randomValue();
+                final LongArraySet view = plain.subSet(Math.min(a, b), Math.max(a, b));
+                checkViews("layout of a view of " + size, new TreeSet<>(view), view.withSearchLayout());
+            }
+        }
+        final LongArraySet padded = new LongArraySet(1, 2, Long.MAX_VALUE).withSearchLayout();
+        Assert.assertTrue("expected the maximal value", padded.contains(Long.MAX_VALUE));
+        Assert.assertFalse("expected the padding out of a view", padded.headSet(3).contains(Long.MAX_VALUE));
+        Assert.assertEquals("expected the padding out of a view", 2, padded.headSet(3).size());
+    }
+
+    @Test
+    public void test04() {
+        final LongArraySet set = new LongArraySet(3, 1, 2, 3);
+        Assert.assertEquals("expected sorted unique elements", List.of(1L, 2L, 3L), new ArrayList<>(set));
+        Assert.assertThrows(IllegalArgumentException.class, () -> set.subSet(3L, 1L));
+        Assert.assertThrows(UnsupportedOperationException.class, () -> set.add(4L));
+        Assert.assertNull("expected natural order", set.comparator());
+    }
+}
@@ -0,0 +1,323 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mutable sorted set built as a log-structured merge tree of immutable {@link ArraySet} runs.
+ * <p>
+ * Updates go to a small concurrent insertion buffer. A full buffer is frozen into the newest run,
+ * which holds the added elements and the tombstones of the removed ones, shadowing the older runs.
+ * A background task merges adjacent runs while a run is at least half as large as the next older one,
+ * so the sizes of the runs grow geometrically, there are {@code O(log n)} of them
+ * and every element takes part in {@code O(log n)} linear merges. Tombstones are dropped when merged
+ * into the oldest run.
+ * <p>
+ * The merges of all the sets run on a shared pool of daemon threads, at most one merge of a set at a time,
+ * so a set holds no thread of its own and needs no closing. {@link #close()} only stops the merging of the set.
+ * <p>
+ * Reads are lock-free: {@link #contains} looks at the buffer and then at the runs from the newest one.
+ * Ordered access goes through {@link #snapshot()}, which is cached until the next update.
+ * <p>
+ * The class does not implement {@link SortedSet}: its views must be live and writable,
+ * while a range of the set is spread over the buffer and all the runs. Navigation and views
+ * are provided by the immutable {@link ArraySet} returned by {@link #snapshot()}.
+ *
+ * @author Ignatov Nikolay
+ */
+public class LsmArraySet<E extends Comparable<E>> extends AbstractSet<E> implements AutoCloseable {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 12;
+    private static final ExecutorService MERGER = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            runnable -> {
+                final Thread thread = new Thread(runnable, "LsmArraySet merger");
+                thread.setDaemon(true);
+                return thread;
+            }
+    );
+
+    private final Comparator<? super E> comparator;
+    private final int bufferSize;
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+    private volatile Future<?> merge;
+    private volatile boolean closed;
+    private volatile State<E> state;
+    private volatile Snapshot<E> snapshot;
+    // incremented after every update, so a snapshot computed under an unchanged version is complete
+    private volatile long version;
+    private volatile int size;
+
+    public LsmArraySet() {
+        this(null, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates an empty set.
+     *
+     * @param comparator order of the elements, {@code null} for the natural order
+     * @param bufferSize number of updates kept in the buffer before it is frozen into a run
+     */
+    public LsmArraySet(final Comparator<? super E> comparator, final int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        this.comparator = comparator;
+        this.bufferSize = bufferSize;
+        state = new State<E>(new ConcurrentSkipListMap<>(comparator), List.of());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(final Object o) {
+        final State<E> current = state;
+        final Boolean buffered = current.buffer.get(o);
+        if (buffered != null) {
+            return buffered;
+        }
+        for (final Run<E> run : current.runs) {
+            if (run.adds.contains(o)) {
+                return true;
+            }
+            if (run.removes.contains(o)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean add(final E e) {
+        return update(e, true);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized boolean remove(final Object o) {
+        return update((E) o, false);
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> c) {
+        boolean changed = false;
+        for (final Object o : c) {
+            changed |= remove(o);
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> c) {
+        boolean changed = false;
+        for (final E e : snapshot()) {
+            if (!c.contains(e)) {
+                changed |= remove(e);
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public synchronized void clear() {
+        state = new State<E>(new ConcurrentSkipListMap<>(comparator), List.of());
+        size = 0;
+        version++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the elements in the sorted order. Removal through the iterator is not supported.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return snapshot().iterator();
+    }
+
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Returns the current elements as an immutable set for ordered and navigable access.
+     * The snapshot is merged from all the runs once and reused until the set is updated.
+     *
+     * @return immutable copy of the set
+     */
+    public ArraySet<E> snapshot() {
+        final long expected = version;
+        final Snapshot<E> cached = snapshot;
+        if (cached != null && cached.version == expected) {
+            return cached.set;
+        }
+        ArraySet<E> merged = new ArraySet<E>(List.of(), comparator);
+        final State<E> current = state;
+        for (int i = current.runs.size() - 1; i >= 0; i--) {
+            merged = current.runs.get(i).adds.union(merged.difference(current.runs.get(i).removes));
+        }
+        final Run<E> buffered = freeze(current.buffer);
+        merged = buffered.adds.union(merged.difference(buffered.removes));
+        // a snapshot racing with an update may include a part of it, so it is cached only if nothing changed
+        if (version == expected) {
+            snapshot = new Snapshot<>(expected, merged);
+        }
+        return merged;
+    }
+
+    /**
+     * Stops merging the runs of the set and waits for the running merge step.
+     * The set stays usable, but the runs are not merged any more. The shared merging threads are not affected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        final Future<?> running = merge;
+        if (running == null) {
+            return;
+        }
+        try {
+            running.get(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // the runs stay valid, a failed or stuck merge only leaves them unbalanced
+        }
+    }
+
+    /**
+     * Returns the number of runs, for monitoring of the merging.
+     *
+     * @return number of immutable runs
+     */
+    public int runCount() {
+        return state.runs.size();
+    }
+
+    private boolean update(final E e, final boolean present) {
+        if (contains(e) == present) {
+            return false;
+        }
+        size += present ? 1 : -1;
+        State<E> current = state;
+        final E buffered = present && current.buffer.containsKey(e) ? current.buffer.ceilingKey(e) : null;
+        if (buffered != null && !buffered.equals(e)) {
+            // the map keeps the key of an equal entry, while the added element must replace the removed one
+            final ConcurrentNavigableMap<E, Boolean> buffer = new ConcurrentSkipListMap<>(current.buffer);
+            buffer.remove(e);
+            current = new State<>(buffer, current.runs);
+            state = current;
+        }
+        current.buffer.put(e, present);
+        if (current.buffer.size() >= bufferSize) {
+            final List<Run<E>> runs = new ArrayList<>(current.runs.size() + 1);
+            runs.add(freeze(current.buffer));
+            runs.addAll(current.runs);
+            state = new State<E>(new ConcurrentSkipListMap<>(comparator), List.copyOf(runs));
+            scheduleMerge();
+        }
+        version++;
+        return true;
+    }
+
+    private Run<E> freeze(final ConcurrentNavigableMap<E, Boolean> buffer) {
+        final ArraySet.Builder<E> adds = ArraySet.<E>builder(comparator);
+        final ArraySet.Builder<E> removes = ArraySet.<E>builder(comparator);
+        for (final Map.Entry<E, Boolean> entry : buffer.entrySet()) {
+            (entry.getValue() ? adds : removes).add(entry.getKey());
+        }
+        return new Run<>(adds.build(), removes.build());
+    }
+
+    private void scheduleMerge() {
+        if (!closed && mergeScheduled.compareAndSet(false, true)) {
+            merge = MERGER.submit(this::mergeRuns);
+        }
+    }
+
+    private void mergeRuns() {
+        do {
+            try {
+                while (!closed && mergeStep()) {
+                    // merging while the sizes are out of balance
+                }
+            } finally {
+                mergeScheduled.set(false);
+            }
+            // a run frozen after the last step must not wait for the next flush
+        } while (!closed && needsMerge(state.runs) >= 0 && mergeScheduled.compareAndSet(false, true));
+    }
+
+    /**
+     * Returns the index of the newer run of the oldest pair to merge, -1 if the sizes are balanced.
+     */
+    private static <E extends Comparable<E>> int needsMerge(final List<Run<E>> runs) {
+        for (int i = runs.size() - 2; i >= 0; i--) {
+            if (2 * runs.get(i).size() >= runs.get(i + 1).size()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean mergeStep() {
+        final List<Run<E>> runs = state.runs;
+        final int index = needsMerge(runs);
+        if (index < 0) {
+            return false;
+        }
+        final Run<E> newer = runs.get(index);
+        final Run<E> older = runs.get(index + 1);
+        final boolean oldest = index + 2 == runs.size();
+        final Run<E> merged = new Run<>(
+                newer.adds.union(older.adds.difference(newer.removes)),
+                oldest
+                        ? new ArraySet<E>(List.of(), comparator)
+                        : newer.removes.union(older.removes.difference(newer.adds))
+        );
+        synchronized (this) {
+            // new runs could be frozen in front of the merged pair, and clear() could drop the pair
+            final List<Run<E>> current = new ArrayList<>(state.runs);
+            int position = 0;
+            while (position + 1 < current.size() && current.get(position) != newer) {
+                position++;
+            }
+            if (position + 1 >= current.size() || current.get(position + 1) != older
+                    || oldest && position + 2 != current.size()) {
+                // the pair changed while merging, the merged run is dropped and the balance is checked again
+                return true;
+            }
+            current.set(position, merged);
+            current.remove(position + 1);
+            state = new State<>(state.buffer, List.copyOf(current));
+        }
+        return true;
+    }
+
+    /**
+     * Immutable run: elements added and removed after the older runs were frozen.
+     */
+    private record Run<E extends Comparable<E>>(ArraySet<E> adds, ArraySet<E> removes) {
+        private int size() {
+            return adds.size() + removes.size();
+        }
+    }
+
+    /**
+     * Buffer of updates, the value is {@code false} for a removed element, and the runs from the newest one.
+     */
+    private record State<E extends Comparable<E>>(ConcurrentNavigableMap<E, Boolean> buffer, List<Run<E>> runs) {
+    }
+
+    private record Snapshot<E extends Comparable<E>>(long version, ArraySet<E> set) {
+    }
+}
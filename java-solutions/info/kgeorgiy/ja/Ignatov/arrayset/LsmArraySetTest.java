@@ -0,0 +1,210 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import org.junit.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class LsmArraySetTest {
+    private static final int TIMEOUT = 30_000;
+    private static final int MAX_VALUE = 200;
+    private static final List<Comparator<Integer>> COMPARATORS = Arrays.asList(
+            null, Comparator.reverseOrder(), Comparator.comparingInt(x -> x / 2)
+    );
+
+    private final Random random = new Random(239);
+
+    private static void check(final String context, final NavigableSet<Integer> expected,
+                              final LsmArraySet<Integer> actual) {
+        final List<Integer> elements = new ArrayList<>(expected);
+        Assert.assertEquals(context + ": size", expected.size(), actual.size());
+        Assert.assertEquals(context + ": elements", elements, new ArrayList<>(actual));
+        Assert.assertEquals(context + ": snapshot", elements, new ArrayList<>(actual.snapshot()));
+        Assert.assertEquals(context + ": equals", expected, actual);
+        for (int value = -MAX_VALUE - 1; value <= MAX_VALUE + 1; value++) {
+            Assert.assertEquals(context + ": contains " + value, expected.contains(value), actual.contains(value));
+        }
+    }
+
+    private static int maxRuns(final int updates, final int bufferSize) {
+        // the sizes of the balanced runs at least halve from the oldest one
+        return 2 + 2 * (32 - Integer.numberOfLeadingZeros(updates / bufferSize + 1));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void test01() {
+        for (final Comparator<Integer> comparator : COMPARATORS) {
+            for (final int bufferSize : new int[]{1, 2, 3, 8}) {
+                final String context = "buffer of " + bufferSize + ", comparator " + comparator;
+                final NavigableSet<Integer> expected = new TreeSet<>(comparator);
+                try (LsmArraySet<Integer> actual = new LsmArraySet<>(comparator, bufferSize)) {
+                    for (int op = 0; op < 3000; op++) {
+                        final int value = random.nextInt(2 * MAX_VALUE + 1) - MAX_VALUE;
+                        final String operation = context + ", operation " + op;
+                        switch (random.nextInt(10)) {
+                            case 0, 1, 2, 3, 4 -> Assert.assertEquals(operation + ": add " + value,
+                                    expected.add(value), actual.add(value));
+                            case 5, 6, 7 -> Assert.assertEquals(operation + ": remove " + value,
+                                    expected.remove(value), actual.remove(value));
+                            case 8 -> Assert.assertEquals(operation + ": contains " + value,
+                                    expected.contains(value), actual.contains(value));
+                            default -> {
+                                Assert.assertEquals(operation + ": size", expected.size(), actual.size());
+                                Assert.assertEquals(operation + ": snapshot",
+                                        new ArrayList<>(expected), new ArrayList<>(actual.snapshot()));
+                            }
+                        }
+                        if (op % 1000 == 999) {
+                            check(operation, expected, actual);
+                        }
+                    }
+
+                    final Set<Integer> removed = new HashSet<>();
+                    for (int i = 0; i < 50; i++) {
+                        removed.add(random.nextInt(2 * MAX_VALUE + 1) - MAX_VALUE);
+                    }
+                    Assert.assertEquals(context + ": removeAll", expected.removeAll(removed), actual.removeAll(removed));
+                    check(context + " after removeAll", expected, actual);
+
+                    final Set<Integer> retained = new HashSet<>();
+                    for (int i = 0; i < 2 * MAX_VALUE; i++) {
+                        retained.add(random.nextInt(2 * MAX_VALUE + 1) - MAX_VALUE);
+                    }
+                    Assert.assertEquals(context + ": retainAll", expected.retainAll(retained), actual.retainAll(retained));
+                    check(context + " after retainAll", expected, actual);
+
+                    actual.clear();
+                    expected.clear();
+                    check(context + " after clear", expected, actual);
+                    for (int value = 0; value < 20; value++) {
+                        Assert.assertEquals(context + ": add after clear " + value,
+                                expected.add(value), actual.add(value));
+                    }
+                    check(context + " refilled", expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void test02() throws InterruptedException {
+        final int bufferSize = 4;
+        final int updates = 20_000;
+        try (LsmArraySet<Integer> set = new LsmArraySet<>(null, bufferSize)) {
+            for (int value = 0; value < updates; value++) {
+                set.add(value);
+            }
+            // the merges run in the background, the runs are balanced soon after the last flush
+            final long deadline = System.currentTimeMillis() + TIMEOUT / 2;
+            while (set.runCount() > maxRuns(updates, bufferSize) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue("expected O(log n) runs, got " + set.runCount(),
+                    set.runCount() <= maxRuns(updates, bufferSize));
+            Assert.assertEquals("expected all the elements", updates, set.size());
+            for (int value = 0; value < updates; value++) {
+                Assert.assertTrue("expected " + value, set.contains(value));
+            }
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void test03() throws InterruptedException, ExecutionException {
+        final int writers = 4;
+        final int readers = 3;
+        final int range = 1000;
+        // the stable keys are added before the start and never removed, so the readers always see them
+        final int stable = writers * range;
+        final LsmArraySet<Integer> set = new LsmArraySet<>(null, 8);
+        for (int value = stable; value < stable + 100; value++) {
+            set.add(value);
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+        try {
+            final List<Future<TreeSet<Integer>>> written = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                final int from = writer * range;
+                written.add(executor.submit(() -> {
+                    final Random local = new Random(from);
+                    final TreeSet<Integer> expected = new TreeSet<>();
+                    for (int op = 0; op < 20_000; op++) {
+                        final int value = from + local.nextInt(range);
+                        if (local.nextInt(3) == 0) {
+                            Assert.assertEquals("remove " + value, expected.remove(value), set.remove(value));
+                        } else {
+                            Assert.assertEquals("add " + value, expected.add(value), set.add(value));
+                        }
+                    }
+                    return expected;
+                }));
+            }
+
+            final AtomicBoolean done = new AtomicBoolean();
+            final List<Future<?>> read = new ArrayList<>();
+            for (int reader = 0; reader < readers; reader++) {
+                read.add(executor.submit(() -> {
+                    final Random local = new Random();
+                    while (!done.get()) {
+                        final int value = stable + local.nextInt(100);
+                        Assert.assertTrue("expected the stable " + value, set.contains(value));
+                        final ArraySet<Integer> snapshot = set.snapshot();
+                        Integer previous = null;
+                        for (final Integer element : snapshot) {
+                            Assert.assertTrue("expected the sorted snapshot", previous == null || previous < element);
+                            previous = element;
+                        }
+                        Assert.assertEquals("expected the stable elements in the snapshot",
+                                100, snapshot.subSet(stable, stable + 100).size());
+                    }
+                    return null;
+                }));
+            }
+
+            final TreeSet<Integer> expected = new TreeSet<>();
+            for (int value = stable; value < stable + 100; value++) {
+                expected.add(value);
+            }
+            for (final Future<TreeSet<Integer>> future : written) {
+                expected.addAll(future.get());
+            }
+            done.set(true);
+            for (final Future<?> future : read) {
+                future.get();
+            }
+
+            set.close();
+            Assert.assertEquals("expected the size of the written elements", expected.size(), set.size());
+            Assert.assertEquals("expected the written elements", new ArrayList<>(expected), new ArrayList<>(set));
+            for (int value = 0; value < stable + 100; value++) {
+                Assert.assertEquals("contains " + value, expected.contains(value), set.contains(value));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void test04() throws InterruptedException {
+        // the merging threads are shared, so many sets do not start a thread each
+        final int before = Thread.activeCount();
+        final List<LsmArraySet<Integer>> sets = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final LsmArraySet<Integer> set = new LsmArraySet<>(null, 1);
+            for (int value = 0; value < 10; value++) {
+                set.add(value);
+            }
+            sets.add(set);
+        }
+        Assert.assertTrue("expected shared merging threads, active " + Thread.activeCount(),
+                Thread.activeCount() - before <= Runtime.getRuntime().availableProcessors());
+        for (final LsmArraySet<Integer> set : sets) {
+            set.close();
+            Assert.assertEquals("expected the elements after close", 10, set.size());
+            Assert.assertTrue("expected a usable closed set", set.add(10));
+            Assert.assertTrue("expected a usable closed set", set.contains(10));
+        }
+        Assert.assertThrows(IllegalArgumentException.class, () -> new LsmArraySet<Integer>(null, 0));
+    }
+}
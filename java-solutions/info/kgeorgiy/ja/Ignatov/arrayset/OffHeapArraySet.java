@@ -0,0 +1,303 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable sorted set of fixed-width keys stored outside of the heap,
+ * in direct buffers or in a memory-mapped file, so its size is not limited by the heap and the garbage collector
+ * does not scan it. Keys are kept in their {@link KeyCodec encoded} form and are searched without decoding.
+ * <p>
+ * The file written by {@link #write} is the header (magic, key width, number of keys) followed by the sorted keys,
+ * so {@link #map} opens it in constant time. The buffers are split into chunks of whole keys,
+ * since a single buffer is limited to 2 GiB. Subsets are windows over the same buffers.
+ *
+ * @param <E> type of the keys
+ * @author Ignatov Nikolay
+ */
+public class OffHeapArraySet<E> extends AbstractSet<E> implements SortedSet<E> {
+    private static final int MAGIC = 0x4F415331; // "OAS1"
+    private static final int HEADER = 2 * Integer.BYTES + Long.BYTES;
+    private static final int CHUNK = 1 << 30;
+
+    private final KeyCodec<E> codec;
+    private final int width;
+    private final int chunkKeys;
+    private final ByteBuffer[] chunks;
+    private final long from;
+    private final long to;
+
+    private OffHeapArraySet(final KeyCodec<E> codec, final ByteBuffer[] chunks, final long from, final long to) {
+        this.codec = codec;
+        this.chunks = chunks;
+        this.from = from;
+        this.to = to;
+        width = codec.width();
+        chunkKeys = CHUNK / width;
+    }
+
+    /**
+     * Copies the keys to direct buffers. The keys are sorted and deduplicated in their encoded form on the heap,
+     * so this is meant for sets fitting the heap once. Larger sets are written by {@link #write} from a sorted source.
+     *
+     * @param keys  keys to copy
+     * @param codec encoding of the keys
+     * @param <E>   type of the keys
+     * @return set of the keys
+     */
+    public static <E> OffHeapArraySet<E> copyOf(final Collection<? extends E> keys, final KeyCodec<E> codec) {
+        final int width = codec.width();
+        final ByteBuffer key = ByteBuffer.allocate(width);
+        final byte[][] encoded = new byte[keys.size()][];
+        int size = 0;
+        for (final E k : keys) {
+            codec.encode(k, key, 0);
+            encoded[size++] = key.array().clone();
+        }
+        Arrays.sort(encoded, 0, size, Arrays::compareUnsigned);
+
+        final int chunkKeys = CHUNK / width;
+        final List<ByteBuffer> chunks = new ArrayList<>();
+        long count = 0;
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && Arrays.equals(encoded[i - 1], encoded[i])) {
+                continue;
+            }
+            if (count % chunkKeys == 0) {
+                chunks.add(ByteBuffer.allocateDirect(Math.min(chunkKeys, size - i) * width));
+            }
+            chunks.get(chunks.size() - 1).put(encoded[i]);
+            count++;
+        }
+        return new OffHeapArraySet<>(codec, chunks.toArray(ByteBuffer[]::new), 0, count);
+    }
+
+    /**
+     * Writes keys in the format of {@link #map}.
+     *
+     * @param file  file to write
+     * @param keys  keys in the increasing order without duplicates
+     * @param codec encoding of the keys
+     * @param <E>   type of the keys
+     * @throws IOException              if the file can`t be written
+     * @throws IllegalArgumentException if the keys are not increasing
+     */
+    public static <E> void write(final Path file, final Iterable<? extends E> keys, final KeyCodec<E> codec)
+            throws IOException {
+        final int width = codec.width();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(Math.max(HEADER + width, (1 << 20) / width * width));
+            final byte[] previous = new byte[width];
+            buffer.position(HEADER);
+            long count = 0;
+            for (final E key : keys) {
+                // the keys follow the header, so the buffer is not filled exactly when the width doesn't divide it
+                if (buffer.remaining() < width) {
+                    writeFully(channel, buffer.flip());
+                    buffer.clear();
+                }
+                final int offset = buffer.position();
+                codec.encode(key, buffer, offset);
+                if (count > 0
+                        && Arrays.compareUnsigned(previous, 0, width, buffer.array(), offset, offset + width) >= 0) {
+                    throw new IllegalArgumentException("Keys are not increasing at " + key);
+                }
+                System.arraycopy(buffer.array(), offset, previous, 0, width);
+                buffer.position(offset + width);
+                count++;
+            }
+            writeFully(channel, buffer.flip());
+            channel.position(0);
+            writeFully(channel, ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(width).putLong(count).flip());
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #write}. Only the header is read, the keys are paged in on access.
+     *
+     * @param file  file to map
+     * @param codec encoding of the keys, the same as used for writing
+     * @param <E>   type of the keys
+     * @return set of the keys
+     * @throws IOException if the file can`t be mapped or has a wrong format
+     */
+    public static <E> OffHeapArraySet<E> map(final Path file, final KeyCodec<E> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // reading the header
+            }
+            header.flip();
+            if (header.remaining() < HEADER || header.getInt() != MAGIC || header.getInt() != codec.width()) {
+                throw new IOException("Not a set of keys of width " + codec.width() + ": " + file);
+            }
+            final long count = header.getLong();
+            final long chunkBytes = (long) CHUNK / codec.width() * codec.width();
+            if (count < 0 || count > (channel.size() - HEADER) / codec.width()) {
+                throw new IOException("Truncated set of keys: " + file);
+            }
+            final ByteBuffer[] chunks = new ByteBuffer[(int) ((count * codec.width() + chunkBytes - 1) / chunkBytes)];
+            for (int i = 0; i < chunks.length; i++) {
+                final long position = i * chunkBytes;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + position,
+                        Math.min(chunkBytes, count * codec.width() - position));
+            }
+            return new OffHeapArraySet<>(codec, chunks, 0, count);
+        }
+    }
+
+    private ByteBuffer chunk(final long index) {
+        return chunks[(int) (index / chunkKeys)];
+    }
+
+    private int offset(final long index) {
+        return (int) (index % chunkKeys) * width;
+    }
+
+    private E get(final long index) {
+        return codec.decode(chunk(index), offset(index));
+    }
+
+    /**
+     * Compares the key at the index with the encoded key as unsigned bytes, by eight bytes at once.
+     */
+    private int compare(final long index, final ByteBuffer key) {
+        final ByteBuffer chunk = chunk(index);
+        final int offset = offset(index);
+        int i = 0;
+        for (; i + Long.BYTES <= width; i += Long.BYTES) {
+            final int c = Long.compareUnsigned(chunk.getLong(offset + i), key.getLong(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        for (; i < width; i++) {
+            final int c = Byte.compareUnsigned(chunk.get(offset + i), key.get(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private ByteBuffer encode(final E key) {
+        final ByteBuffer buffer = ByteBuffer.allocate(width);
+        codec.encode(key, buffer, 0);
+        return buffer;
+    }
+
+    /**
+     * Returns the index of the first key of the range not less than the encoded key.
+     */
+    private long lowerBound(final ByteBuffer key) {
+        long low = from;
+        long high = to;
+        while (low < high) {
+            final long middle = (low + high) >>> 1;
+            if (compare(middle, key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private OffHeapArraySet<E> window(final long fromIndex, final long toIndex) {
+        return new OffHeapArraySet<>(codec, chunks, fromIndex, Math.max(fromIndex, toIndex));
+    }
+
+    /**
+     * Returns the number of keys, which may exceed {@link Integer#MAX_VALUE}.
+     *
+     * @return number of keys
+     */
+    public long longSize() {
+        return to - from;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, longSize());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(final Object o) {
+        final ByteBuffer key = encode((E) o);
+        final long index = lowerBound(key);
+        return index < to && compare(index, key) == 0;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private long index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public E next() {
+                if (index >= to) {
+                    throw new NoSuchElementException("no more elements");
+                }
+                return get(index++);
+            }
+        };
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return null;
+    }
+
+    @Override
+    public E first() throws NoSuchElementException {
+        if (!isEmpty()) {
+            return get(from);
+        }
+        throw new NoSuchElementException("first element does not exist");
+    }
+
+    @Override
+    public E last() throws NoSuchElementException {
+        if (!isEmpty()) {
+            return get(to - 1);
+        }
+        throw new NoSuchElementException("last element does not exist");
+    }
+
+    @Override
+    public OffHeapArraySet<E> headSet(final E toElement) {
+        return window(from, lowerBound(encode(toElement)));
+    }
+
+    @Override
+    public OffHeapArraySet<E> tailSet(final E fromElement) {
+        return window(lowerBound(encode(fromElement)), to);
+    }
+
+    @Override
+    public OffHeapArraySet<E> subSet(final E fromElement, final E toElement) throws IllegalArgumentException {
+        final ByteBuffer fromKey = encode(fromElement);
+        final ByteBuffer toKey = encode(toElement);
+        if (Arrays.compareUnsigned(fromKey.array(), toKey.array()) > 0) {
+            throw new IllegalArgumentException("illegal arguments for subset");
+        }
+        return window(lowerBound(fromKey), lowerBound(toKey));
+    }
+}
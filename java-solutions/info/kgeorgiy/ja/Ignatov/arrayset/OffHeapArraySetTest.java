@@ -0,0 +1,181 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class OffHeapArraySetTest {
+    private static final int TESTS = 20;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(239);
+
+    /**
+     * {@code long} keys padded to the width, which doesn't have to divide the header or the write buffer.
+     */
+    private static KeyCodec<Long> padded(final int width) {
+        return new KeyCodec<>() {
+            @Override
+            public int width() {
+                return width;
+            }
+
+            @Override
+            public void encode(final Long key, final ByteBuffer buffer, final int offset) {
+                for (int i = 0; i < width - Long.BYTES; i++) {
+                    buffer.put(offset + i, (byte) i);
+                }
+                KeyCodec.LONG.encode(key, buffer, offset + width - Long.BYTES);
+            }
+
+            @Override
+            public Long decode(final ByteBuffer buffer, final int offset) {
+                return KeyCodec.LONG.decode(buffer, offset + width - Long.BYTES);
+            }
+        };
+    }
+
+    private static final List<KeyCodec<Long>> CODECS = List.of(KeyCodec.LONG, padded(12), padded(32));
+
+    private List<Long> randomKeys(final int size, final long bound) {
+        return random.longs(size, -bound, bound).boxed().collect(Collectors.toList());
+    }
+
+    private void check(final String context, final NavigableSet<Long> expected, final OffHeapArraySet<Long> actual,
+                       final long bound) {
+        Assert.assertEquals(context + ": size", expected.size(), actual.size());
+        Assert.assertEquals(context + ": longSize", expected.size(), actual.longSize());
+        Assert.assertEquals(context + ": elements", new ArrayList<>(expected), new ArrayList<>(actual));
+        if (!expected.isEmpty()) {
+            Assert.assertEquals(context + ": first", expected.first(), actual.first());
+            Assert.assertEquals(context + ": last", expected.last(), actual.last());
+        } else {
+            Assert.assertThrows(NoSuchElementException.class, actual::first);
+        }
+        for (int i = 0; i < 100; i++) {
+            final long key = random.nextLong(-bound - 5, bound + 5);
+            Assert.assertEquals(context + ": contains " + key, expected.contains(key), actual.contains(key));
+        }
+        for (final Long key : expected) {
+            Assert.assertTrue(context + ": contains " + key, actual.contains(key));
+        }
+    }
+
+    private void checkViews(final String context, final NavigableSet<Long> set, final OffHeapArraySet<Long> actual,
+                            final long bound) {
+        check(context, set, actual, bound);
+        NavigableSet<Long> expected = set;
+        OffHeapArraySet<Long> view = actual;
+        final StringBuilder path = new StringBuilder(context);
+        for (int depth = 0; depth < 4; depth++) {
+            final long a = random.nextLong(-bound - 5, bound + 5);
+            final long b = random.nextLong(-bound - 5, bound + 5);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    path.append(".headSet(").append(a).append(")");
+                    expected = new TreeSet<>(expected.headSet(a, false));
+                    view = view.headSet(a);
+                }
+                case 1 -> {
+                    path.append(".tailSet(").append(a).append(")");
+                    expected = new TreeSet<>(expected.tailSet(a, true));
+                    view = view.tailSet(a);
+                }
+                default -> {
+                    final long low = Math.min(a, b);
+                    final long high = Math.max(a, b);
+                    path.append(".subSet(").append(low).append(", ").append(high).append(")");
+                    expected = new TreeSet<>(expected.subSet(low, true, high, false));
+                    view = view.subSet(low, high);
+                }
+            }
+            check(path.toString(), expected, view, bound);
+        }
+    }
+
+    @Test
+    public void test01() {
+        for (final KeyCodec<Long> codec : CODECS) {
+            for (int test = 0; test < TESTS; test++) {
+                final long bound = random.nextBoolean() ? 100 : Long.MAX_VALUE / 2;
+                final List<Long> keys = randomKeys(random.nextInt(300), bound);
+                checkViews("copy of width " + codec.width(), new TreeSet<>(keys),
+                        OffHeapArraySet.copyOf(keys, codec), bound);
+            }
+        }
+    }
+
+    @Test
+    public void test02() throws IOException {
+        for (final KeyCodec<Long> codec : CODECS) {
+            for (final int size : new int[]{0, 1, 1000, 100_000}) {
+                final long bound = Long.MAX_VALUE / 2;
+                final TreeSet<Long> expected = new TreeSet<>(randomKeys(size, bound));
+                final Path file = folder.newFile().toPath();
+                OffHeapArraySet.write(file, expected, codec);
+                final String context = size + " keys of width " + codec.width();
+                Assert.assertEquals(context + ": file size", 16 + (long) expected.size() * codec.width(), Files.size(file));
+                checkViews("mapped " + context, expected, OffHeapArraySet.map(file, codec), bound);
+            }
+        }
+    }
+
+    @Test
+    public void test03() throws IOException {
+        final Path file = folder.newFile().toPath();
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> OffHeapArraySet.write(file, List.of(1L, 3L, 2L), KeyCodec.LONG));
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> OffHeapArraySet.write(file, List.of(1L, 1L), KeyCodec.LONG));
+    }
+
+    @Test
+    public void test04() throws IOException {
+        final Path file = folder.newFile().toPath();
+        OffHeapArraySet.write(file, List.of(1L, 2L, 3L), KeyCodec.LONG);
+        final byte[] bytes = Files.readAllBytes(file);
+
+        Assert.assertThrows("expected other width to be rejected", IOException.class,
+                () -> OffHeapArraySet.map(file, padded(12)));
+
+        final byte[] magic = bytes.clone();
+        magic[0] ^= 1;
+        Files.write(file, magic);
+        Assert.assertThrows("expected wrong magic to be rejected", IOException.class,
+                () -> OffHeapArraySet.map(file, KeyCodec.LONG));
+
+        Files.write(file, Arrays.copyOf(bytes, 10));
+        Assert.assertThrows("expected truncated header to be rejected", IOException.class,
+                () -> OffHeapArraySet.map(file, KeyCodec.LONG));
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        Assert.assertThrows("expected truncated keys to be rejected", IOException.class,
+                () -> OffHeapArraySet.map(file, KeyCodec.LONG));
+
+        for (final long count : new long[]{-1, 4, Long.MAX_VALUE, Long.MAX_VALUE / 8 + 1}) {
+            final byte[] corrupted = bytes.clone();
+            ByteBuffer.wrap(corrupted).putLong(8, count);
+            Files.write(file, corrupted);
+            Assert.assertThrows("expected count " + count + " to be rejected", IOException.class,
+                    () -> OffHeapArraySet.map(file, KeyCodec.LONG));
+        }
+    }
+
+    @Test
+    public void test05() {
+        final List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            keys.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        final OffHeapArraySet<UUID> set = OffHeapArraySet.copyOf(keys, KeyCodec.UUID);
+        Assert.assertEquals("expected the order of UUID#compareTo", new ArrayList<>(new TreeSet<>(keys)),
+                new ArrayList<>(set));
+    }
+}
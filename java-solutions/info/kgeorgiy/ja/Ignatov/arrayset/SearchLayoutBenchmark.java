@@ -0,0 +1,51 @@
+package info.kgeorgiy.ja.Ignatov.arrayset;
+
+import java.util.Random;
+import java.util.stream.LongStream;
+
+/**
+ * Compares {@link LongArraySet#contains(long)} with the binary search and with the search layout.
+ * Usage: {@code SearchLayoutBenchmark [maxSize]}, sizes are powers of ten from 1000 up to {@code maxSize},
+ * 100 000 000 by default, which needs about 2.5 GiB of heap. Sizes are limited by the maximal array length.
+ *
+ * @author Ignatov Nikolay
+ */
+public class SearchLayoutBenchmark {
+    private static final int QUERIES = 1 << 22;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        final long maxSize = Math.min(Integer.MAX_VALUE - 8, args.length > 0 ? Long.parseLong(args[0]) : 100_000_000);
+        final Random random = new Random(4875043285743285204L);
+        System.out.printf("%12s %14s %14s%n", "size", "binary, ns", "layout, ns");
+        for (long size = 1000; size <= maxSize; size *= 10) {
+            final LongArraySet plain = new LongArraySet(LongStream.range(0, size).map(i -> 2 * i).toArray());
+            final LongArraySet layout = plain.withSearchLayout();
+
+            // half of the queries are present
+            final long[] queries = random.longs(QUERIES, 0, 2L * size).toArray();
+            double best = Double.MAX_VALUE;
+            double bestLayout = Double.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                best = Math.min(best, measure(plain, queries));
+                bestLayout = Math.min(bestLayout, measure(layout, queries));
+            }
+            System.out.printf("%12d %14.1f %14.1f%n", size, best, bestLayout);
+        }
+    }
+
+    private static double measure(final LongArraySet set, final long[] queries) {
+        final long start = System.nanoTime();
+        int found = 0;
+        for (final long query : queries) {
+            if (set.contains(query)) {
+                found++;
+            }
+        }
+        final double nanos = (double) (System.nanoTime() - start) / queries.length;
+        if (found > queries.length) {
+            throw new AssertionError("Impossible");
+        }
+        return nanos;
+    }
+}
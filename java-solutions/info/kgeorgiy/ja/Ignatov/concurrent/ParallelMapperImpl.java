@@ -4,17 +4,30 @@ import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Function;
 
 /**
  * Class includes functionality of {@link ParallelMapper} interface
+ * <p>
+ * Every working thread has its own lock-free deque of tasks. Tasks are pushed to the deques in turn,
+ * a thread takes tasks from the head of its deque and, when it is empty, steals from the tails of the others,
+ * so the threads do not contend on a single queue. A thread without tasks parks until a new task is pushed.
  *
  * @author Ignatov Nikolay
  * @see ParallelMapper
  * @see Thread
  */
 public class ParallelMapperImpl implements ParallelMapper {
-    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final List<Deque<Runnable>> queues;
+    // 1 for a thread which found no tasks and is going to park
+    private final AtomicIntegerArray parked;
+    // threads woken and not yet found a task, while there is one no other thread needs to be woken
+    private final AtomicInteger searching = new AtomicInteger();
+    private final AtomicInteger nextQueue = new AtomicInteger();
     private final List<Thread> currentThreads;
 
     /**
@@ -26,20 +39,21 @@ public class ParallelMapperImpl implements ParallelMapper {
         if (threads <= 0) {
             throw new IllegalArgumentException("Illegal threads number");
         }
+        queues = new ArrayList<>();
+        parked = new AtomicIntegerArray(threads);
         currentThreads = new ArrayList<>();
-        Runnable run = () -> {
-            try {
-                while (!Thread.interrupted()) {
-                    runSynchronizedTask();
-                }
-            } catch (InterruptedException e) {
-                // ignore
-            } finally {
-                Thread.currentThread().interrupt(); // recovering interrupting flag
-            }
-        };
         for (int i = 0; i < threads; i++) {
-            currentThreads.add(new Thread(run));
+            queues.add(new ConcurrentLinkedDeque<>());
+        }
+        for (int i = 0; i < threads; i++) {
+            final int worker = i;
+            currentThreads.add(new Thread(() -> {
+                try {
+                    runTasks(worker);
+                } finally {
+                    Thread.currentThread().interrupt(); // recovering interrupting flag
+                }
+            }));
         }
         for (var currentThread : currentThreads) {
             currentThread.start();
@@ -59,31 +73,25 @@ public class ParallelMapperImpl implements ParallelMapper {
      */
     @Override
     public <T, R> List<R> map(Function<? super T, ? extends R> f, List<? extends T> args) throws InterruptedException {
-        synchronized (ParallelMapper.class) {
-            List<InterruptedException> exceptions = new ArrayList<>();
-            InnerRunner<R> runner = new InnerRunner<>(args.size());
-            int i = 0;
-            for (var arg : args) {
-                final int index = i++;
-                try {
-                    produceSynchronizedTask(() ->
-                            runner.addValue(f.apply(arg), index)
-                    );
-                } catch (InterruptedException e) {
-                    exceptions.add(e);
-                }
-            }
-            if (!exceptions.isEmpty()) {
-                InterruptedException e = new InterruptedException("Some of the threads were interrupted");
-                for (var exception : exceptions) {
-                    e.addSuppressed(exception);
-                }
-                throw e;
-            }
-            var answer = runner.getList();
-            tasks.clear();
-            return answer;
+        // every call waits only for its own tasks, so concurrent calls interleave on the working threads
+        final List<? extends T> values = args instanceof RandomAccess ? args : new ArrayList<>(args);
+        InnerRunner<T, R> runner = new InnerRunner<>(f, values, currentThreads.size());
+        for (int i = Math.min(currentThreads.size(), values.size()); i > 0; i--) {
+            schedule(runner);
         }
+        return runner.getList();
+    }
+
+    /**
+     * Pushes a task running one chunk of the call. While elements are left, the task pushes itself again
+     * to the tail of a deque, so the tasks of other calls waiting there run in between.
+     */
+    private void schedule(final InnerRunner<?, ?> runner) {
+        produceTask(() -> {
+            if (runner.run()) {
+                schedule(runner);
+            }
+        });
     }
 
     /**
@@ -92,8 +100,7 @@ public class ParallelMapperImpl implements ParallelMapper {
      */
     @Override
     public void close() {
-        // :NOTE: synchronized(this)
-        synchronized (ParallelMapperImpl.class) {
+        synchronized (this) {
             for (var currentThread : currentThreads) {
                 currentThread.interrupt();
             }
@@ -107,46 +114,205 @@ public class ParallelMapperImpl implements ParallelMapper {
         }
     }
 
-    private void produceSynchronizedTask(final Runnable task) throws InterruptedException { // producer
-        synchronized (tasks) {
-            tasks.add(task);
-            tasks.notify(); // there are only consumers in waiting
+    private void produceTask(final Runnable task) { // producer
+        final int queue = Math.floorMod(nextQueue.getAndIncrement(), queues.size());
+        queues.get(queue).addLast(task);
+        // a thread already looking for tasks finds this one, otherwise a parked one is woken
+        if (searching.get() == 0) {
+            wakeWorker(queue);
+        }
+    }
+
+    /**
+     * Unparks a parked thread, starting from the owner of the queue, and counts it as searching.
+     */
+    private void wakeWorker(final int queue) {
+        for (int i = 0; i < queues.size(); i++) {
+            final int worker = (queue + i) % queues.size();
+            if (parked.get(worker) == 1 && parked.compareAndSet(worker, 1, 0)) {
+                searching.incrementAndGet();
+                LockSupport.unpark(currentThreads.get(worker));
+                return;
+            }
+        }
+    }
+
+    private void runTasks(final int worker) { // consumer
+        boolean searcher = false;
+        while (!Thread.interrupted()) {
+            final Runnable task = takeTask(worker);
+            if (task != null) {
+                if (searcher) {
+                    searcher = false;
+                    // the last searcher found work, there may be more for a parked thread
+                    if (searching.decrementAndGet() == 0 && hasTasks()) {
+                        wakeWorker(worker + 1);
+                    }
+                }
+                task.run();
+                continue;
+            }
+            if (searcher) {
+                searcher = false;
+                searching.decrementAndGet();
+            }
+            parked.set(worker, 1);
+            // a task pushed before the flag was set is seen here, a later one unparks this thread
+            if (hasTasks()) {
+                if (parked.compareAndSet(worker, 1, 0)) {
+                    continue;
+                }
+                // already woken and counted as searching
+            } else {
+                LockSupport.park(this);
+                // a spurious or interrupting wake-up leaves the flag set
+                if (parked.compareAndSet(worker, 1, 0)) {
+                    continue;
+                }
+            }
+            searcher = true;
+        }
+    }
+
+    private Runnable takeTask(final int worker) {
+        final Runnable own = queues.get(worker).pollFirst();
+        if (own != null) {
+            return own;
         }
+        for (int i = 1; i < queues.size(); i++) {
+            final Runnable stolen = queues.get((worker + i) % queues.size()).pollLast();
+            if (stolen != null) {
+                return stolen;
+            }
+        }
+        return null;
     }
 
-    private void runSynchronizedTask() throws InterruptedException { // consumer
-        Runnable task;
-        synchronized (tasks) {
-            while (tasks.isEmpty()) {
-                tasks.wait();
+    private boolean hasTasks() {
+        for (var queue : queues) {
+            if (!queue.isEmpty()) {
+                return true;
             }
-            task = tasks.poll();
-            tasks.notify();
         }
-        task.run();
+        return false;
     }
 
-    private static class InnerRunner<R> {
-        private final List<R> results;
-        private int tasksCompleted = 0;
+    /**
+     * Results of a single {@link #map} call.
+     * <p>
+     * Every task claims a chunk of consecutive elements by an atomic cursor and writes the results
+     * to the preallocated array, then gives the working thread up until it is taken from a deque again. The first elements are claimed one by one
+     * to measure the cost of the function, then the chunks take about {@link #CHUNK_NANOS}
+     * but are small enough for every thread to get several of them.
+     */
+    private static class InnerRunner<T, R> {
+        private static final long CHUNK_NANOS = 50_000;
+        private static final int CHUNKS_PER_THREAD = 4;
+
+        private final Function<? super T, ? extends R> function;
+        private final List<? extends T> args;
+        private final Object[] results;
+        private final int maxChunk;
+        private final AtomicInteger cursor = new AtomicInteger();
+        private final AtomicInteger tasksCompleted = new AtomicInteger();
+        // smoothed cost of an element, 0 until the first chunk is done
+        private volatile long elementNanos;
+        private volatile boolean cancelled;
+        private Throwable exception;
+
+        private InnerRunner(final Function<? super T, ? extends R> function, final List<? extends T> args,
+                            final int threads) {
+            this.function = function;
+            this.args = args;
+            results = new Object[args.size()];
+            maxChunk = Math.max(1, args.size() / (threads * CHUNKS_PER_THREAD));
+        }
+
+        /**
+         * Runs a single chunk.
+         *
+         * @return whether some elements are not claimed yet and the task should be pushed again
+         */
+        private boolean run() {
+            if (cancelled) {
+                // the remaining elements are skipped at once, the caller waits only for their count
+                final int from = cursor.getAndSet(results.length);
+                if (from < results.length) {
+                    complete(results.length - from);
+                }
+                return false;
+            }
+            final int chunk = chunkSize();
+            final int from = cursor.getAndAdd(chunk);
+            if (from >= results.length) {
+                return false;
+            }
+            final int to = Math.min(results.length, from + chunk);
+            apply(from, to);
+            complete(to - from);
+            return cursor.get() < results.length;
+        }
+
+        private void complete(final int elements) {
+            if (tasksCompleted.addAndGet(elements) == results.length) {
+                synchronized (this) {
+                    notify();  // only the caller is waiting
+                }
+            }
+        }
 
-        private InnerRunner(int size) {
-            results = new ArrayList<>(Collections.nCopies(size, null));
+        private int chunkSize() {
+            final long nanos = elementNanos;
+            return nanos == 0 ? 1 : (int) Math.max(1, Math.min(maxChunk, CHUNK_NANOS / nanos));
         }
 
-        private synchronized void addValue(final R value, int taskNumber) {
-            tasksCompleted++;
-            if (tasksCompleted == results.size()) {
-                notify();  // only consumers in waiting
+        private void apply(final int from, final int to) {
+            final long start = System.nanoTime();
+            try {
+                for (int i = from; i < to; i++) {
+                    results[i] = function.apply(args.get(i));
+                }
+            } catch (Throwable e) {
+                // an error must not kill the working thread, the caller would wait for the chunk forever
+                fail(e);
+                return;
             }
-            results.set(taskNumber, value);
+            final long nanos = (System.nanoTime() - start) / (to - from);
+            final long previous = elementNanos;
+            // racing updates may lose a measurement, which only delays the adaptation
+            elementNanos = Math.max(1, previous == 0 ? nanos : (3 * previous + nanos) / 4);
         }
 
+        private synchronized void fail(final Throwable thrown) {
+            if (exception == null) {
+                exception = thrown;
+            } else if (exception != thrown) {
+                exception.addSuppressed(thrown);
+            }
+            cancelled = true;
+        }
+
+        @SuppressWarnings("unchecked")
         private synchronized List<R> getList() throws InterruptedException {
-            while (tasksCompleted < results.size()) {
-                wait();
+            try {
+                while (tasksCompleted.get() < results.length) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                cancelled = true; // the remaining elements are skipped by the working threads
+                throw e;
+            }
+            if (exception instanceof RuntimeException e) {
+                throw e;
+            }
+            if (exception instanceof Error e) {
+                throw e;
+            }
+            if (exception != null) {
+                // a checked exception thrown sneakily by the function
+                throw new IllegalStateException(exception);
             }
-            return results;
+            return (List<R>) Arrays.asList(results);
         }
     }
 
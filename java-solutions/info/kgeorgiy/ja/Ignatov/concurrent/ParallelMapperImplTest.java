@@ -0,0 +1,169 @@
+package info.kgeorgiy.ja.Ignatov.concurrent;
+
+import org.junit.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class ParallelMapperImplTest {
+    private static final int THREADS = 4;
+    private static final int TIMEOUT = 10_000;
+
+    private ParallelMapperImpl mapper;
+
+    @Before
+    public void createMapper() {
+        mapper = new ParallelMapperImpl(THREADS);
+    }
+
+    @After
+    public void closeMapper() {
+        mapper.close();
+    }
+
+    private static List<Integer> range(final int size) {
+        return IntStream.range(0, size).boxed().collect(Collectors.toList());
+    }
+
+    private static <T, R> List<R> expected(final Function<? super T, ? extends R> f, final List<? extends T> args) {
+        return args.stream().map(f).collect(Collectors.toList());
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void test01() throws InterruptedException {
+        final Function<Integer, String> f = x -> "v" + 2 * x;
+        for (final int size : new int[]{0, 1, 3, THREADS, 1000, 100_000}) {
+            final List<Integer> args = range(size);
+            Assert.assertEquals("expected results in the order of arguments of size " + size,
+                    expected(f, args), mapper.map(f, args));
+            Assert.assertEquals("expected results of a linked list of size " + size,
+                    expected(f, args), mapper.map(f, new LinkedList<>(args)));
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void test02() throws InterruptedException, ExecutionException {
+        final int callers = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int caller = 0; caller < callers; caller++) {
+                final int shift = caller;
+                futures.add(executor.submit(() -> {
+                    final Random random = new Random(shift);
+                    for (int call = 0; call < 50; call++) {
+                        final List<Integer> args = range(random.nextInt(2000));
+                        final Function<Integer, Integer> f = x -> x * 31 + shift;
+                        Assert.assertEquals("expected results of the own call of caller " + shift,
+                                expected(f, args), mapper.map(f, args));
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void test03() throws InterruptedException {
+        final RuntimeException thrown = new IllegalArgumentException("bad argument");
+        final RuntimeException actual = Assert.assertThrows(IllegalArgumentException.class,
+                () -> mapper.map(x -> {
+                    if (x == 500) {
+                        throw thrown;
+                    }
+                    return x;
+                }, range(1000)));
+        Assert.assertSame("expected the exception of the function", thrown, actual);
+
+        final Error error = new AssertionError("broken invariant");
+        Assert.assertSame("expected the error of the function", error,
+                Assert.assertThrows(AssertionError.class, () -> mapper.map(x -> {
+                    throw error;
+                }, range(100))));
+
+        final List<Integer> args = range(1000);
+        Assert.assertEquals("expected the working threads to survive the failures",
+                expected(x -> x + 1, args), mapper.map(x -> x + 1, args));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void test04() throws InterruptedException {
+        final AtomicInteger applied = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger interrupted = new AtomicInteger();
+        final Thread caller = new Thread(() -> {
+            try {
+                mapper.map(x -> {
+                    started.countDown();
+                    applied.incrementAndGet();
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return x;
+                }, range(10_000));
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+        });
+        caller.start();
+        started.await();
+        caller.interrupt();
+        caller.join();
+        Assert.assertEquals("expected the interrupted caller to get InterruptedException", 1, interrupted.get());
+
+        // the remaining elements are skipped, so the next call is not delayed by the cancelled one
+        final List<Integer> args = range(100);
+        Assert.assertEquals("expected results after the cancelled call", args, mapper.map(x -> x, args));
+        Assert.assertTrue("expected the cancelled elements to be skipped, applied " + applied.get(),
+                applied.get() < 1000);
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void test05() throws InterruptedException, ExecutionException {
+        try (ParallelMapperImpl pair = new ParallelMapperImpl(2)) {
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                final List<Integer> args = range(400);
+                final Future<List<Integer>> slow = executor.submit(() -> pair.map(x -> {
+                    sleep(5);
+                    return x;
+                }, args));
+                sleep(50);
+                final long start = System.nanoTime();
+                Assert.assertEquals("expected the result of the short call", List.of(1), pair.map(x -> x + 1, List.of(0)));
+                final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                Assert.assertFalse("expected the long call to be still running", slow.isDone());
+                // the long call takes about a second, the short one waits only for the current chunks
+                Assert.assertTrue("expected the short call not to wait for the long one, took " + millis + " ms",
+                        millis < 300);
+                Assert.assertEquals("expected the result of the long call", args, slow.get());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void test06() {
+        Assert.assertThrows(IllegalArgumentException.class, () -> new ParallelMapperImpl(0));
+    }
+}
@@ -0,0 +1,95 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Compares the allocation rate of the per-file hashing path before and after the reuse of digests and buffers.
+ * Usage: {@code AllocationBenchmark [files number] [rounds]}.
+ *
+ * @author Ignatov Nikolay
+ */
+public class AllocationBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException, NoSuchAlgorithmException {
+        final int files = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final Path directory = Files.createTempDirectory("walk-benchmark");
+        try {
+            final List<Path> paths = new ArrayList<>();
+            for (int i = 0; i < files; i++) {
+                paths.add(Files.writeString(directory.resolve("file" + i), "content of the file " + i));
+            }
+            final FileHasher hasher = new FileHasher(ReadStrategy.fromProperties());
+            for (int round = 0; round < rounds; round++) {
+                measure("legacy", paths, AllocationBenchmark::legacy);
+                measure("reused", paths, (writer, path) -> {
+                    hasher.write(writer, hasher.hash(path));
+                    writer.write(' ');
+                    writer.write(path.toString());
+                    writer.newLine();
+                });
+            }
+        } finally {
+            try (Stream<Path> walk = Files.walk(directory)) {
+                for (final Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private static void measure(final String name, final List<Path> paths, final Hashing hashing)
+            throws IOException, NoSuchAlgorithmException {
+        final long threadId = Thread.currentThread().getId();
+        final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(OutputStream.nullOutputStream()));
+        final long allocated = THREADS.getThreadAllocatedBytes(threadId);
+        final long start = System.nanoTime();
+        for (final Path path : paths) {
+            hashing.hash(writer, path);
+        }
+        writer.flush();
+        final long time = System.nanoTime() - start;
+        final long bytes = THREADS.getThreadAllocatedBytes(threadId) - allocated;
+        System.out.printf("%s: %d bytes/file, %.1f MB/s allocated, %d ns/file%n",
+                name, bytes / paths.size(), bytes * 1e3 / time, time / paths.size());
+    }
+
+    // the per-file path of Walker before the digests and buffers were reused
+    private static void legacy(final BufferedWriter writer, final Path path)
+            throws IOException, NoSuchAlgorithmException {
+        final MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            final byte[] block = new byte[4096];
+            int length;
+            while ((length = inputStream.read(block)) >= 0) {
+                sha1.update(block, 0, length);
+            }
+        }
+        final StringBuilder builder = new StringBuilder();
+        for (final byte b : sha1.digest()) {
+            builder.append(String.format("%02x", b));
+        }
+        writer.write(builder + " " + path);
+        writer.newLine();
+        writer.flush();
+    }
+
+    private interface Hashing {
+        void hash(BufferedWriter writer, Path path) throws IOException, NoSuchAlgorithmException;
+    }
+}
@@ -0,0 +1,271 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes the files listed in the input file like {@link Walker}, keeping a bounded number of reads in flight.
+ * Intended for high-latency storage, where a single synchronous read at a time leaves the disk idle.
+ * <p>
+ * Files are read through {@link AsynchronousFileChannel}, every read block is hashed by a separate pool,
+ * after that the next block of the file is requested. At most {@code inFlight} files are read at once,
+ * each of them holds a single buffer, so the memory does not depend on the size of the input.
+ * Results are written in the input order.
+ * The incremental mode of {@link FileHasher} is not used here.
+ *
+ * @author Ignatov Nikolay
+ */
+public class AsyncWalker {
+    private static final int TIMEOUT = 20;
+
+    private final FileHasher hasher;
+    private final int inFlight;
+    private final Semaphore slots;
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final BlockingQueue<FileHasher.State> states;
+    private final ExecutorService readers;
+    private final ExecutorService hashers;
+
+    /**
+     * Creates a walker.
+     *
+     * @param hasher     hasher defining the algorithms
+     * @param inFlight   maximal number of files read at once, must be positive
+     * @param bufferSize size of a single read in bytes, must be positive
+     * @param threads    number of hashing threads, must be positive
+     */
+    public AsyncWalker(final FileHasher hasher, final int inFlight, final int bufferSize, final int threads) {
+        if (inFlight <= 0 || bufferSize <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Illegal pipeline parameters");
+        }
+        this.hasher = hasher;
+        this.inFlight = inFlight;
+        slots = new Semaphore(inFlight);
+        buffers = new ArrayBlockingQueue<>(inFlight);
+        states = new ArrayBlockingQueue<>(inFlight);
+        for (int i = 0; i < inFlight; i++) {
+            buffers.add(ByteBuffer.allocateDirect(bufferSize));
+            states.add(hasher.newState());
+        }
+        readers = Executors.newFixedThreadPool(inFlight);
+        hashers = Executors.newFixedThreadPool(threads);
+    }
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (WalkException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void run(String[] args) throws WalkException {
+        final FileHasher hasher = FileHasher.fromProperties();
+        final AsyncWalker walker = new AsyncWalker(
+                hasher,
+                Integer.getInteger("walk.inFlight", 64),
+                Integer.getInteger("walk.bufferSize", ChannelReadStrategy.DEFAULT_BUFFER_SIZE),
+                Runtime.getRuntime().availableProcessors()
+        );
+        try {
+            walker.walk(args, FlushPolicy.fromProperties());
+        } finally {
+            walker.close();
+        }
+        ManifestIndex.buildFromProperties(Paths.get(args[1]), hasher.getAlgorithms());
+    }
+
+    /**
+     * Hashes the files listed in the input file.
+     *
+     * @param args        input and output files
+     * @param flushPolicy policy of flushing the output
+     * @throws WalkException when the input or output can`t be processed
+     */
+    public void walk(final String[] args, final FlushPolicy flushPolicy) throws WalkException {
+        final Path[] paths = Walker.getPaths(args);
+        final Path input = paths[0], output = paths[1];
+
+        try (BufferedReader bufferedReader = Files.newBufferedReader(input)) {
+            try (BufferedWriter bufferedWriter = Files.newBufferedWriter(output)) {
+                final Deque<CompletableFuture<String>> pending = new ArrayDeque<>();
+                String filename;
+                while ((filename = bufferedReader.readLine()) != null) {
+                    // the reorder window is bounded too, so a slow head can`t make the finished results pile up
+                    while (!pending.isEmpty() && (pending.peek().isDone() || pending.size() >= 16 * inFlight)) {
+                        write(bufferedWriter, pending.poll(), flushPolicy);
+                    }
+                    pending.add(start(filename));
+                }
+                while (!pending.isEmpty()) {
+                    write(bufferedWriter, pending.poll(), flushPolicy);
+                }
+            } catch (IOException e) {
+                throw new WalkException("Some problems occurred while processing the output or input file. " + e.getMessage());
+            } catch (SecurityException e) {
+                throw new WalkException("Access is denied during processing the output file" + e.getMessage());
+            }
+        } catch (IOException e) {
+            throw new WalkException("Some problems occurred while processing the input file. " + e.getMessage());
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during processing the input file" + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the reading and hashing threads.
+     */
+    public void close() {
+        readers.shutdownNow();
+        hashers.shutdownNow();
+        try {
+            if (!readers.awaitTermination(TIMEOUT, TimeUnit.SECONDS)
+                    || !hashers.awaitTermination(TIMEOUT, TimeUnit.SECONDS)) {
+                System.err.println("Pool did not terminate...");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void write(final BufferedWriter writer, final CompletableFuture<String> line,
+                              final FlushPolicy flushPolicy) throws IOException {
+        try {
+            writer.write(line.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof WalkException walkException) {
+                throw walkException;
+            }
+            throw e;
+        }
+        writer.newLine();
+        flushPolicy.lineWritten(writer);
+    }
+
+    private CompletableFuture<String> start(final String filename) throws WalkException {
+        final Path path;
+        try {
+            path = Paths.get(filename);
+        } catch (InvalidPathException e) {
+            return CompletableFuture.completedFuture(hasher.columns(null) + " " + filename);
+        }
+        slots.acquireUninterruptibly();
+        final long start = System.nanoTime();
+        final AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(path, Set.of(StandardOpenOption.READ), readers);
+        } catch (IOException | UnsupportedOperationException e) {
+            slots.release();
+            if (hasher.getStats() != null) {
+                hasher.getStats().error();
+            }
+            return CompletableFuture.completedFuture(hasher.columns(null) + " " + filename);
+        } catch (SecurityException e) {
+            slots.release();
+            throw new WalkException("Can`t access the file for hashing. " + e.getMessage());
+        }
+        final FileRead read = new FileRead(channel, filename, buffers.remove(), states.remove(), start);
+        read.next();
+        return read.result;
+    }
+
+    /**
+     * Reading of a single file: a read completion passes the block to the hashing pool,
+     * which requests the next block after the block is hashed.
+     */
+    private final class FileRead implements CompletionHandler<Integer, Void> {
+        private final AsynchronousFileChannel channel;
+        private final String filename;
+        private final ByteBuffer buffer;
+        private final FileHasher.State state;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final long start;
+        private final long opened = System.nanoTime();
+        private long position;
+
+        private FileRead(final AsynchronousFileChannel channel, final String filename,
+                         final ByteBuffer buffer, final FileHasher.State state, final long start) {
+            this.channel = channel;
+            this.filename = filename;
+            this.buffer = buffer;
+            this.state = state;
+            this.start = start;
+        }
+
+        private void next() {
+            buffer.clear();
+            channel.read(buffer, position, null, this);
+        }
+
+        @Override
+        public void completed(final Integer read, final Void attachment) {
+            if (read < 0) {
+                hashers.execute(() -> finish(true, null));
+                return;
+            }
+            hashers.execute(() -> {
+                try {
+                    buffer.flip();
+                    state.accept(buffer);
+                    position += read;
+                    next();
+                } catch (RuntimeException e) {
+                    finish(false, e);
+                }
+            });
+        }
+
+        @Override
+        public void failed(final Throwable e, final Void attachment) {
+            hashers.execute(() -> finish(false, null));
+        }
+
+        private void finish(final boolean success, final RuntimeException error) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // the hash is already computed
+            }
+            final WalkStats stats = hasher.getStats();
+            if (stats != null) {
+                if (success) {
+                    // the read time includes the time spent waiting for a hashing thread
+                    stats.file(opened - start, System.nanoTime() - opened - state.digestNanos(),
+                            state.digestNanos(), state.bytes());
+                } else {
+                    stats.error();
+                }
+            }
+            final byte[] hash = state.finish();
+            final String line = hasher.columns(success ? hash : null) + " " + filename;
+            buffers.add(buffer);
+            states.add(state);
+            slots.release();
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(line);
+            }
+        }
+    }
+}
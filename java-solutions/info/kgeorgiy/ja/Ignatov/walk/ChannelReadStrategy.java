@@ -0,0 +1,39 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Consumer;
+
+/**
+ * Reads files with large {@link FileChannel} reads into a direct buffer reused by the calling thread.
+ *
+ * @author Ignatov Nikolay
+ */
+public class ChannelReadStrategy implements ReadStrategy {
+    /*package-private*/ static final int DEFAULT_BUFFER_SIZE = 1 << 18;
+    private final ThreadLocal<ByteBuffer> buffers;
+
+    /**
+     * Creates a strategy with buffers of the specified size.
+     *
+     * @param bufferSize size of the per-thread buffer in bytes, must be positive
+     */
+    public ChannelReadStrategy(final int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Illegal buffer size");
+        }
+        buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(bufferSize));
+    }
+
+    @Override
+    public void read(final FileChannel channel, final long size, final Consumer<ByteBuffer> sink) throws IOException {
+        final ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            sink.accept(buffer);
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental hash function of a single {@link HashAlgorithm}.
+ *
+ * @author Ignatov Nikolay
+ */
+/*package-private*/ interface Digest {
+    /**
+     * Updates the digest with the remaining bytes of the buffer, the position of the buffer is moved to its limit.
+     *
+     * @param buffer next block of data
+     */
+    void update(ByteBuffer buffer);
+
+    /**
+     * Completes the computation and resets the digest for the next use.
+     *
+     * @param out    array to store the hash to, {@link HashAlgorithm#length()} bytes in big-endian order
+     * @param offset offset of the hash in the array
+     * @return offset after the stored hash
+     */
+    int digest(byte[] out, int offset);
+}
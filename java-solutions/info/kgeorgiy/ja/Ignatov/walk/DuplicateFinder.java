@@ -0,0 +1,249 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Finds duplicate files among the files and directory trees listed in the input file.
+ * <p>
+ * Candidates are narrowed in stages, so files which can`t have a duplicate are not read at all:
+ * <ol>
+ *     <li>files are grouped by size</li>
+ *     <li>files of the same size are grouped by the hash of their first and last blocks,
+ *     files not larger than two blocks are hashed completely at this stage</li>
+ *     <li>files still colliding are grouped by the SHA-256 of the whole content</li>
+ * </ol>
+ * Each duplicate group is written as {@code <sha-256> <path>} lines followed by an empty line.
+ * Groups and files in a group follow the input order, then traversal order.
+ *
+ * @author Ignatov Nikolay
+ */
+public class DuplicateFinder {
+    private static final int BLOCK = 1 << 12;
+
+    private final FileHasher hasher;
+    private final ThreadLocal<ByteBuffer> blocks = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BLOCK));
+    private final ThreadLocal<Digest> partialDigests = ThreadLocal.withInitial(HashAlgorithm.XXH64::create);
+
+    /**
+     * Creates a finder.
+     *
+     * @param strategy strategy of reading files for the full hashes
+     */
+    public DuplicateFinder(final ReadStrategy strategy) {
+        hasher = new FileHasher(strategy, List.of(HashAlgorithm.SHA256), null);
+    }
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (WalkException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void run(String[] args) throws WalkException {
+        final Path[] paths = Walker.getPaths(args);
+        final DuplicateFinder finder = new DuplicateFinder(ReadStrategy.fromProperties());
+        final List<FileInfo> files = new ArrayList<>();
+        try (BufferedReader bufferedReader = Files.newBufferedReader(paths[0])) {
+            final Set<Object> seen = new HashSet<>();
+            String filename;
+            while ((filename = bufferedReader.readLine()) != null) {
+                try {
+                    collect(Paths.get(filename), true, seen, files);
+                } catch (InvalidPathException e) {
+                    // not a file
+                }
+            }
+        } catch (IOException e) {
+            throw new WalkException("Some problems occurred while processing the input file. " + e.getMessage());
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during processing the input file" + e.getMessage());
+        }
+
+        try (BufferedWriter bufferedWriter = Files.newBufferedWriter(paths[1])) {
+            for (final List<FileInfo> group : finder.find(files)) {
+                for (final FileInfo file : group) {
+                    bufferedWriter.write(finder.hasher.columns(file.hash));
+                    bufferedWriter.write(' ');
+                    bufferedWriter.write(file.path.toString());
+                    bufferedWriter.newLine();
+                }
+                bufferedWriter.newLine();
+            }
+        } catch (IOException e) {
+            throw new WalkException("Some problems occurred while processing the output file. " + e.getMessage());
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during processing the output file" + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds groups of files with equal content.
+     *
+     * @param files files to compare, every file must be listed once
+     * @return groups of at least two equal files, in the order of the first files of the groups
+     */
+    public List<List<FileInfo>> find(final List<FileInfo> files) {
+        final List<List<FileInfo>> result = new ArrayList<>();
+        for (final List<FileInfo> sameSize : group(files, file -> file.size).values()) {
+            if (sameSize.size() < 2) {
+                continue;
+            }
+            final long size = sameSize.get(0).size;
+            for (final List<FileInfo> samePartial : group(sameSize, this::partialHash).values()) {
+                if (samePartial.size() < 2) {
+                    continue;
+                }
+                if (size <= 2 * BLOCK) {
+                    // the whole content was hashed at the previous stage
+                    result.add(samePartial);
+                    continue;
+                }
+                for (final List<FileInfo> sameFull : group(samePartial, this::fullHash).values()) {
+                    if (sameFull.size() > 1) {
+                        result.add(sameFull);
+                    }
+                }
+            }
+        }
+        result.sort(Comparator.comparingInt(group -> group.get(0).index));
+        return result;
+    }
+
+    private static <K> Map<K, List<FileInfo>> group(
+            final Collection<FileInfo> files,
+            final Function<FileInfo, K> key
+    ) {
+        final List<K> keys = files.parallelStream().map(key).toList();
+        final Map<K, List<FileInfo>> groups = new LinkedHashMap<>();
+        int i = 0;
+        for (final FileInfo file : files) {
+            final K k = keys.get(i++);
+            if (k != null) {
+                groups.computeIfAbsent(k, unused -> new ArrayList<>()).add(file);
+            }
+        }
+        return groups;
+    }
+
+    private ByteBuffer partialHash(final FileInfo file) {
+        if (file.size <= 2 * BLOCK) {
+            return fullHash(file);
+        }
+        final ByteBuffer block = blocks.get();
+        final Digest digest = partialDigests.get();
+        try (FileChannel channel = FileChannel.open(file.path)) {
+            readBlock(channel, block, 0);
+            digest.update(block);
+            readBlock(channel, block, file.size - BLOCK);
+            digest.update(block);
+            final byte[] hash = new byte[HashAlgorithm.XXH64.length()];
+            digest.digest(hash, 0);
+            return ByteBuffer.wrap(hash);
+        } catch (IOException | SecurityException e) {
+            digest.digest(new byte[HashAlgorithm.XXH64.length()], 0);
+            return null;
+        }
+    }
+
+    private static void readBlock(final FileChannel channel, final ByteBuffer block, final long position)
+            throws IOException {
+        block.clear();
+        while (block.hasRemaining() && channel.read(block, position + block.position()) >= 0) {
+            // a positional read may return a part of the block
+        }
+        block.flip();
+    }
+
+    private ByteBuffer fullHash(final FileInfo file) {
+        final byte[] hash = hasher.hash(file.path);
+        if (hash == null) {
+            return null;
+        }
+        file.hash = hash.clone();
+        return ByteBuffer.wrap(file.hash);
+    }
+
+    private static void collect(final Path path, final boolean root, final Set<Object> seen, final List<FileInfo> files) {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = root
+                    ? Files.readAttributes(path, BasicFileAttributes.class)
+                    : Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException | SecurityException e) {
+            return;
+        }
+        if (attributes.isRegularFile()) {
+            // the same file listed twice or hard-linked is not a duplicate of itself
+            final Object key = attributes.fileKey() != null ? attributes.fileKey() : path.toAbsolutePath().normalize();
+            if (seen.add(key)) {
+                files.add(new FileInfo(path, attributes.size(), files.size()));
+            }
+        } else if (attributes.isDirectory()) {
+            final List<Path> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (final Path child : stream) {
+                    children.add(child);
+                }
+            } catch (IOException | SecurityException e) {
+                return;
+            }
+            children.sort(Comparator.comparing(child -> child.getFileName().toString()));
+            for (final Path child : children) {
+                collect(child, false, seen, files);
+            }
+        }
+    }
+
+    /**
+     * File taking part in the search.
+     */
+    public static final class FileInfo {
+        private final Path path;
+        private final long size;
+        private final int index;
+        private byte[] hash;
+
+        /**
+         * Creates a file description.
+         *
+         * @param path  path of the file
+         * @param size  size of the file
+         * @param index position of the file in the input, groups are ordered by it
+         */
+        public FileInfo(final Path path, final long size, final int index) {
+            this.path = path;
+            this.size = size;
+            this.index = index;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Computes hashes of files with the specified {@link ReadStrategy}.
+ * Every read block is fed to all the selected {@link HashAlgorithm algorithms}, so the file is read once.
+ * In the incremental mode the hashes of the files with unchanged metadata are taken from a {@link HashCache}
+ * without reading the files.
+ *
+ * @author Ignatov Nikolay
+ */
+public class FileHasher {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ReadStrategy strategy;
+    private final List<HashAlgorithm> algorithms;
+    private final HashCache cache;
+    private final WalkStats stats;
+    private final int[] lengths;
+    private final int length;
+    private final ThreadLocal<State> states;
+
+    /**
+     * Creates a SHA-1 hasher reading every file.
+     *
+     * @param strategy strategy of reading files
+     */
+    public FileHasher(final ReadStrategy strategy) {
+        this(strategy, List.of(HashAlgorithm.SHA1), null);
+    }
+
+    /**
+     * Creates a hasher.
+     *
+     * @param strategy   strategy of reading files
+     * @param algorithms algorithms to compute, one output column per algorithm
+     * @param cache      cache of the previous hashes, {@code null} to read every file
+     */
+    public FileHasher(final ReadStrategy strategy, final List<HashAlgorithm> algorithms, final HashCache cache) {
+        this(strategy, algorithms, cache, null);
+    }
+
+    /**
+     * Creates a hasher collecting statistics.
+     *
+     * @param strategy   strategy of reading files
+     * @param algorithms algorithms to compute, one output column per algorithm
+     * @param cache      cache of the previous hashes, {@code null} to read every file
+     * @param stats      statistics to update, {@code null} to turn them off
+     */
+    public FileHasher(final ReadStrategy strategy, final List<HashAlgorithm> algorithms, final HashCache cache,
+                      final WalkStats stats) {
+        if (algorithms.isEmpty()) {
+            throw new IllegalArgumentException("No hash algorithms specified");
+        }
+        this.strategy = strategy;
+        this.algorithms = List.copyOf(algorithms);
+        this.cache = cache;
+        this.stats = stats;
+        lengths = algorithms.stream().mapToInt(HashAlgorithm::length).toArray();
+        length = Arrays.stream(lengths).sum();
+        states = ThreadLocal.withInitial(State::new);
+    }
+
+    /**
+     * Creates a hasher with {@link ReadStrategy#fromProperties()}.
+     * Algorithms are selected by the system property {@code walk.digests}, like {@code SHA-1,SHA-256,CRC32C,XXH64},
+     * SHA-1 is used by default.
+     * The incremental mode is turned on by the system property {@code walk.cache} holding the path of the cache file.
+     * Statistics are turned on by {@link WalkStats#fromProperties()}.
+     *
+     * @return configured hasher
+     * @throws WalkException when the path of the cache file is invalid or some algorithm is unknown
+     */
+    public static FileHasher fromProperties() throws WalkException {
+        final List<HashAlgorithm> algorithms = HashAlgorithm.parse(System.getProperty("walk.digests", "SHA-1"));
+        final String cacheFile = System.getProperty("walk.cache");
+        try {
+            return new FileHasher(ReadStrategy.fromProperties(), algorithms,
+                    cacheFile == null ? null : HashCache.load(Paths.get(cacheFile), algorithms),
+                    WalkStats.fromProperties());
+        } catch (InvalidPathException e) {
+            throw new WalkException("Invalid path of the cache file. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the algorithms of the hasher.
+     *
+     * @return algorithms in the order of the output columns
+     */
+    public List<HashAlgorithm> getAlgorithms() {
+        return algorithms;
+    }
+
+    /**
+     * Returns the statistics of the hasher.
+     *
+     * @return statistics or {@code null} if they are turned off
+     */
+    public WalkStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Writes hashes as space-separated hexadecimal columns, one column per algorithm.
+     *
+     * @param writer writer to write to
+     * @param hash   hashes returned by {@link #hash(Path)}, {@code null} gives zero columns
+     * @throws IOException when the writer fails
+     */
+    public void write(final Writer writer, final byte[] hash) throws IOException {
+        final State state = states.get();
+        writer.write(state.hex, 0, state.format(hash));
+    }
+
+    /**
+     * Formats hashes as space-separated hexadecimal columns, one column per algorithm.
+     *
+     * @param hash hashes returned by {@link #hash(Path)}, {@code null} gives zero columns
+     * @return formatted hashes
+     */
+    public String columns(final byte[] hash) {
+        final State state = states.get();
+        return new String(state.hex, 0, state.format(hash));
+    }
+
+    /**
+     * Calculates the hashes of the file.
+     * The returned array is reused by the next call in the same thread and must not be modified.
+     *
+     * @param input file to hash
+     * @return the hashes of all the algorithms one after another or {@code null} if the file can`t be read
+     * @throws WalkException when the file can`t be accessed
+     */
+    public byte[] hash(final Path input) throws WalkException {
+        if (cache == null) {
+            return calculate(input);
+        }
+        try {
+            final String key = input.toAbsolutePath().normalize().toString();
+            final BasicFileAttributes before = Files.readAttributes(input, BasicFileAttributes.class);
+            final byte[] cached = cache.get(key, before);
+            if (cached != null) {
+                if (stats != null) {
+                    stats.cached();
+                }
+                return cached;
+            }
+            final byte[] hash = calculate(input);
+            // the file could be changed while it was read, such hash must not be reused
+            if (hash != null && HashCache.sameMetadata(before, Files.readAttributes(input, BasicFileAttributes.class))) {
+                cache.put(key, before, hash.clone());
+            }
+            return hash;
+        } catch (IOException | InvalidPathException e) {
+            return null;
+        } catch (SecurityException e) {
+            throw new WalkException("Can`t access the file for hashing. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Calculates the hash of a directory from its children, so directories with equal hashes have equal subtrees.
+     * Every algorithm hashes the names, types and own hashes of the children.
+     *
+     * @param children children of the directory in traversal order, unreadable ones have {@code null} hashes
+     * @return the hashes of all the algorithms one after another
+     */
+    public byte[] directoryHash(final List<Child> children) {
+        final State state = states.get();
+        final byte[] hash = new byte[length];
+        int offset = 0;
+        for (int i = 0; i < lengths.length; i++) {
+            final Digest digest = state.digests[i];
+            for (final Child child : children) {
+                digest.update(ByteBuffer.wrap(child.name.getBytes(StandardCharsets.UTF_8)));
+                digest.update(ByteBuffer.wrap(new byte[]{0, (byte) (child.directory ? 'd' : 'f')}));
+                digest.update(child.hash == null
+                        ? ByteBuffer.allocate(lengths[i])
+                        : ByteBuffer.wrap(child.hash, offset, lengths[i]));
+            }
+            offset = digest.digest(hash, offset);
+        }
+        return hash;
+    }
+
+    /**
+     * Child of a directory hashed by {@link #directoryHash(List)}.
+     *
+     * @param name      file name of the child
+     * @param directory whether the child is a directory
+     * @param hash      hash of the child or {@code null} if it can`t be read
+     */
+    public record Child(String name, boolean directory, byte[] hash) {
+    }
+
+    /**
+     * Atomically stores the cache of the incremental mode. Only the files hashed since the loading are kept.
+     *
+     * @throws WalkException when the cache can`t be written
+     */
+    public void commit() throws WalkException {
+        if (cache != null) {
+            cache.save();
+        }
+    }
+
+    private byte[] calculate(final Path input) throws WalkException {
+        final State state = states.get();
+        final long start = stats == null ? 0 : System.nanoTime();
+        boolean finished = false;
+        try (FileChannel channel = FileChannel.open(input)) {
+            final long opened = stats == null ? 0 : System.nanoTime();
+            strategy.read(channel, channel.size(), state);
+            if (stats != null) {
+                final long digestNanos = state.digestNanos();
+                stats.file(opened - start, System.nanoTime() - opened - digestNanos, digestNanos, state.bytes());
+            }
+            finished = true;
+            return state.finish();
+        } catch (SecurityException e) {
+            throw new WalkException("Can`t access the file for hashing. " + e.getMessage());
+        } catch (UnsupportedOperationException e) {
+            throw new WalkException("Some unsupported option is specified while processing the files for hashing. "
+                    + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new WalkException("Invalid options are specified while processing the files for hashing. "
+                    + e.getMessage());
+        } catch (IOException e) {
+            if (stats != null) {
+                stats.error();
+            }
+            return null;
+        } finally {
+            if (!finished) {
+                // a digest interrupted by any failure must start from scratch for the next file of the thread
+                state.finish();
+            }
+        }
+    }
+
+    /**
+     * Creates a standalone state for hashing a file outside of the calling thread, like in {@link AsyncWalker}.
+     *
+     * @return new state
+     * @throws WalkException when some algorithm is not available
+     */
+    /*package-private*/ State newState() throws WalkException {
+        return new State();
+    }
+
+    /**
+     * Digests, hash and hexadecimal buffers reused by a single thread.
+     * Every block passed to {@link #accept(ByteBuffer)} is fed to all the digests.
+     */
+    /*package-private*/ final class State implements Consumer<ByteBuffer> {
+        private final Digest[] digests = new Digest[algorithms.size()];
+        private final byte[] hash = new byte[length];
+        private final char[] hex = new char[2 * length + lengths.length - 1];
+        private long digestNanos;
+        private long bytes;
+
+        private State() throws WalkException {
+            for (int i = 0; i < digests.length; i++) {
+                digests[i] = algorithms.get(i).create();
+            }
+        }
+
+        @Override
+        public void accept(final ByteBuffer buffer) {
+            final long start = stats == null ? 0 : System.nanoTime();
+            final int position = buffer.position();
+            for (final Digest digest : digests) {
+                buffer.position(position);
+                digest.update(buffer);
+            }
+            if (stats != null) {
+                digestNanos += System.nanoTime() - start;
+                bytes += buffer.position() - position;
+            }
+        }
+
+        /*package-private*/ long digestNanos() {
+            return digestNanos;
+        }
+
+        /*package-private*/ long bytes() {
+            return bytes;
+        }
+
+        /**
+         * Completes the hashing and resets the digests.
+         *
+         * @return the hashes of all the algorithms, the array is reused by the next call
+         */
+        /*package-private*/ byte[] finish() {
+            digestNanos = 0;
+            bytes = 0;
+            int offset = 0;
+            for (final Digest digest : digests) {
+                offset = digest.digest(hash, offset);
+            }
+            return hash;
+        }
+
+        private int format(final byte[] hash) {
+            int position = 0;
+            int offset = 0;
+            for (final int columnLength : lengths) {
+                if (position > 0) {
+                    hex[position++] = ' ';
+                }
+                for (final int end = offset + columnLength; offset < end; offset++) {
+                    final int b = hash == null ? 0 : hash[offset] & 0xff;
+                    hex[position++] = HEX[b >>> 4];
+                    hex[position++] = HEX[b & 0xf];
+                }
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+public class FileHasherTest {
+    private static final List<HashAlgorithm> ALL = List.of(HashAlgorithm.values());
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file(final byte[] content) throws IOException {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, content);
+        return file;
+    }
+
+    private Path file(final String content) throws IOException {
+        return file(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String columns(final FileHasher hasher, final Path file) {
+        return hasher.columns(hasher.hash(file));
+    }
+
+    @Test
+    public void test01() throws IOException {
+        final FileHasher hasher = new FileHasher(new ChannelReadStrategy(16), ALL, null);
+        Assert.assertEquals("known answers of the empty input",
+                "da39a3ee5e6b4b0d3255bfef95601890afd80709 "
+                        + "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855 "
+                        + "00000000 ef46db3751d8e999",
+                columns(hasher, file("")));
+        Assert.assertEquals("known answers of \"abc\"",
+                "a9993e364706816aba3e25717850c26c9cd0d89d "
+                        + "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad "
+                        + "364b3fb7 44bc2cf5ad770999",
+                columns(hasher, file("abc")));
+    }
+
+    @Test
+    public void test02() throws IOException {
+        final FileHasher hasher = new FileHasher(new ChannelReadStrategy(16), List.of(HashAlgorithm.CRC32C), null);
+        Assert.assertEquals("CRC32C check value", "e3069283", columns(hasher, file("123456789")));
+    }
+
+    @Test
+    public void test03() throws IOException {
+        // longer than a stripe of 32 bytes, so the accumulators are used
+        final FileHasher hasher = new FileHasher(new ChannelReadStrategy(7), List.of(HashAlgorithm.XXH64), null);
+        Assert.assertEquals("XXH64 of a multi-stripe input", "fbcea83c8a378bf1",
+                columns(hasher, file("Nobody inspects the spammish repetition")));
+    }
+
+    @Test
+    public void test04() throws IOException, NoSuchAlgorithmException {
+        final byte[] content = new byte[1_000_003];
+        new Random(239).nextBytes(content);
+        final Path file = file(content);
+        final CRC32C crc = new CRC32C();
+        crc.update(content);
+        final String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(content))
+                + " " + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content))
+                + " " + String.format("%08x", crc.getValue());
+        final List<HashAlgorithm> algorithms = List.of(HashAlgorithm.SHA1, HashAlgorithm.SHA256, HashAlgorithm.CRC32C);
+        for (final ReadStrategy strategy : List.of(
+                new ChannelReadStrategy(4096),
+                new ChannelReadStrategy(1000),
+                new MappedReadStrategy(1 << 16),
+                new ThresholdReadStrategy(1 << 10, new ChannelReadStrategy(64), new MappedReadStrategy(100_000))
+        )) {
+            Assert.assertEquals("hashes must not depend on the read strategy " + strategy.getClass().getSimpleName(),
+                    expected, columns(new FileHasher(strategy, algorithms, null), file));
+        }
+    }
+
+    @Test
+    public void test05() throws IOException {
+        final byte[] content = new byte[100_000];
+        new Random(30).nextBytes(content);
+        final Path file = file(content);
+        final String expected = columns(new FileHasher(new ChannelReadStrategy(1 << 20), ALL, null), file);
+        for (final int size : new int[]{1, 31, 32, 33, 4096}) {
+            Assert.assertEquals("hashes must not depend on the block size " + size,
+                    expected, columns(new FileHasher(new ChannelReadStrategy(size), ALL, null), file));
+        }
+    }
+
+    @Test
+    public void test06() throws IOException {
+        final FileHasher hasher = new FileHasher(new ChannelReadStrategy(16), ALL, null);
+        final Path file = file("abc");
+        final String expected = columns(hasher, file);
+        Assert.assertNull("expected null hash of a missing file", hasher.hash(folder.getRoot().toPath().resolve("missing")));
+        Assert.assertEquals("expected zero columns of a missing file",
+                "0".repeat(40) + " " + "0".repeat(64) + " " + "0".repeat(8) + " " + "0".repeat(16),
+                hasher.columns(null));
+        Assert.assertNull("expected null hash of a directory", hasher.hash(folder.getRoot().toPath()));
+        Assert.assertEquals("a failed file must not affect the next one", expected, columns(hasher, file));
+    }
+}
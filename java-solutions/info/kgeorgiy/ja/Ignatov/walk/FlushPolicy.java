@@ -0,0 +1,57 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the output is flushed: after the specified number of lines
+ * or when the specified time has passed since the last flush, whichever comes first.
+ *
+ * @author Ignatov Nikolay
+ */
+public class FlushPolicy {
+    private final int lines;
+    private final long intervalNanos;
+    private int written;
+    private long lastFlush = System.nanoTime();
+
+    /**
+     * Creates a policy.
+     *
+     * @param lines          number of lines between flushes, {@code 1} flushes every line, {@code 0} disables the limit
+     * @param intervalMillis maximal time between flushes in milliseconds, {@code 0} disables the limit
+     */
+    public FlushPolicy(final int lines, final long intervalMillis) {
+        if (lines < 0 || intervalMillis < 0) {
+            throw new IllegalArgumentException("Illegal flush policy");
+        }
+        this.lines = lines;
+        intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * Creates a policy configured by the system properties {@code walk.flushLines} and {@code walk.flushMillis}.
+     *
+     * @return by default the output is flushed every 4096 lines or every second
+     */
+    public static FlushPolicy fromProperties() {
+        return new FlushPolicy(Integer.getInteger("walk.flushLines", 4096), Long.getLong("walk.flushMillis", 1000));
+    }
+
+    /**
+     * Notifies the policy that a line has been written and flushes the writer if needed.
+     *
+     * @param writer writer the line was written to
+     * @throws IOException when flushing fails
+     */
+    public void lineWritten(final Writer writer) throws IOException {
+        written++;
+        if (lines > 0 && written >= lines
+                || intervalNanos > 0 && System.nanoTime() - lastFlush >= intervalNanos) {
+            writer.flush();
+            written = 0;
+            lastFlush = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Hash algorithms supported by the walk. Several algorithms may be computed in a single read pass.
+ *
+ * @author Ignatov Nikolay
+ */
+public enum HashAlgorithm {
+    SHA1("SHA-1", 20) {
+        @Override
+        Digest create() throws WalkException {
+            return messageDigest("SHA-1");
+        }
+    },
+    SHA256("SHA-256", 32) {
+        @Override
+        Digest create() throws WalkException {
+            return messageDigest("SHA-256");
+        }
+    },
+    CRC32C("CRC32C", 4) {
+        @Override
+        Digest create() {
+            final CRC32C crc = new CRC32C();
+            return new Digest() {
+                @Override
+                public void update(final ByteBuffer buffer) {
+                    crc.update(buffer);
+                }
+
+                @Override
+                public int digest(final byte[] out, final int offset) {
+                    final long value = crc.getValue();
+                    crc.reset();
+                    return putBigEndian(value, Integer.BYTES, out, offset);
+                }
+            };
+        }
+    },
+    XXH64("XXH64", 8) {
+        @Override
+        Digest create() {
+            return new Xxh64();
+        }
+    };
+
+    private final String name;
+    private final int length;
+
+    HashAlgorithm(final String name, final int length) {
+        this.name = name;
+        this.length = length;
+    }
+
+    /**
+     * Creates a new digest of this algorithm.
+     *
+     * @return new digest
+     * @throws WalkException when the algorithm is not available
+     */
+    abstract Digest create() throws WalkException;
+
+    /**
+     * Returns the length of the hash.
+     *
+     * @return length of the hash in bytes
+     */
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Parses a comma-separated list of algorithm names, like {@code SHA-1,CRC32C}.
+     *
+     * @param names names of the algorithms
+     * @return algorithms in the specified order
+     * @throws WalkException when some algorithm is unknown or the list is empty
+     */
+    public static List<HashAlgorithm> parse(final String names) throws WalkException {
+        final List<HashAlgorithm> algorithms = new ArrayList<>();
+        for (final String name : names.split(",")) {
+            algorithms.add(byName(name.trim()));
+        }
+        return List.copyOf(algorithms);
+    }
+
+    private static HashAlgorithm byName(final String name) throws WalkException {
+        for (final HashAlgorithm algorithm : values()) {
+            if (algorithm.name.equalsIgnoreCase(name) || algorithm.name().equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new WalkException("Unknown hash algorithm " + name);
+    }
+
+    /*package-private*/ static int putBigEndian(long value, final int bytes, final byte[] out, final int offset) {
+        for (int i = offset + bytes - 1; i >= offset; i--) {
+            out[i] = (byte) value;
+            value >>>= Byte.SIZE;
+        }
+        return offset + bytes;
+    }
+
+    private static Digest messageDigest(final String algorithm) throws WalkException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new WalkException("This algorithm of hashing is not available. " + e.getMessage());
+        }
+        return new Digest() {
+            @Override
+            public void update(final ByteBuffer buffer) {
+                digest.update(buffer);
+            }
+
+            @Override
+            public int digest(final byte[] out, final int offset) {
+                try {
+                    return offset + digest.digest(out, offset, digest.getDigestLength());
+                } catch (DigestException e) {
+                    throw new AssertionError("Hash buffer is too small", e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,201 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent cache of file hashes keyed by the path, size, modification time and file key of the file.
+ * <p>
+ * The cache is stored in a binary file which is memory-mapped on loading:
+ * magic, signature of the hash algorithms, start time of the run in nanoseconds, number of entries
+ * and then for each entry the path, size, modification time in nanoseconds, file key and hash.
+ * Strings are stored as UTF-8 bytes prefixed with their length.
+ * <p>
+ * A file modified less than {@link #TIMESTAMP_GRANULARITY} before the run which hashed it is racy:
+ * it could be written again in the same tick of the modification time without changing the metadata,
+ * so its cached hash is not trusted and the file is hashed again.
+ *
+ * @author Ignatov Nikolay
+ */
+public class HashCache {
+    private static final int MAGIC = 0x57484332; // "WHC2"
+    // the coarsest modification time among the common file systems, two seconds of FAT
+    private static final long TIMESTAMP_GRANULARITY = TimeUnit.SECONDS.toNanos(2);
+
+    private final Path file;
+    private final String signature;
+    private final Map<String, Entry> previous;
+    private final long previousStart;
+    private final long start = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private HashCache(final Path file, final String signature, final Map<String, Entry> previous,
+                      final long previousStart) {
+        this.file = file;
+        this.signature = signature;
+        this.previous = previous;
+        this.previousStart = previousStart;
+    }
+
+    /**
+     * Loads the cache. Missing or corrupted file or file written for other algorithms gives an empty cache.
+     * A hash of other length than the hashes of the algorithms means a corrupted file.
+     *
+     * @param file       cache file
+     * @param algorithms hash algorithms, cached hashes are valid only for the same algorithms
+     * @return loaded cache
+     * @throws WalkException when the file can`t be accessed
+     */
+    public static HashCache load(final Path file, final List<HashAlgorithm> algorithms) throws WalkException {
+        final String signature = algorithms.toString();
+        final int hashLength = algorithms.stream().mapToInt(HashAlgorithm::length).sum();
+        final Map<String, Entry> entries = new HashMap<>();
+        long start = 0;
+        try (FileChannel channel = FileChannel.open(file)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() >= 2 * Integer.BYTES && buffer.getInt() == MAGIC
+                    && readString(buffer).equals(signature)) {
+                start = buffer.getLong();
+                final int size = buffer.getInt();
+                for (int i = 0; i < size; i++) {
+                    final String path = readString(buffer);
+                    final long length = buffer.getLong();
+                    final long modified = buffer.getLong();
+                    final String fileKey = readString(buffer);
+                    final int digestLength = buffer.get() & 0xff;
+                    if (digestLength != hashLength) {
+                        throw new IllegalArgumentException("Invalid length of a hash " + digestLength);
+                    }
+                    final byte[] digest = new byte[readLength(buffer, digestLength)];
+                    buffer.get(digest);
+                    entries.put(path, new Entry(length, modified, fileKey, digest));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // first run
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            System.err.println("Cache file is corrupted and will be rebuilt. " + e.getMessage());
+            entries.clear();
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during loading the cache file. " + e.getMessage());
+        }
+        return new HashCache(file, signature, entries, start);
+    }
+
+    /*package-private*/ static boolean sameMetadata(final BasicFileAttributes a, final BasicFileAttributes b) {
+        return a.size() == b.size()
+                && a.lastModifiedTime().equals(b.lastModifiedTime())
+                && Objects.equals(a.fileKey(), b.fileKey());
+    }
+
+    /*package-private*/ byte[] get(final String path, final BasicFileAttributes attributes) {
+        final Entry entry = previous.get(path);
+        if (entry == null || !entry.matches(attributes)
+                || entry.modified > previousStart - TIMESTAMP_GRANULARITY) {
+            return null;
+        }
+        current.put(path, entry);
+        return entry.digest;
+    }
+
+    /*package-private*/ void put(final String path, final BasicFileAttributes attributes, final byte[] digest) {
+        current.put(path, new Entry(
+                attributes.size(),
+                modifiedOf(attributes),
+                fileKeyOf(attributes),
+                digest
+        ));
+    }
+
+    /*package-private*/ void save() throws WalkException {
+        final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+                out.writeInt(MAGIC);
+                writeString(out, signature);
+                out.writeLong(start);
+                out.writeInt(current.size());
+                for (final Map.Entry<String, Entry> e : current.entrySet()) {
+                    final Entry entry = e.getValue();
+                    writeString(out, e.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.modified);
+                    writeString(out, entry.fileKey);
+                    out.writeByte(entry.digest.length);
+                    out.write(entry.digest);
+                }
+                out.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new WalkException("Some problems occurred while writing the cache file. " + e.getMessage());
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during writing the cache file. " + e.getMessage());
+        }
+    }
+
+    private static long modifiedOf(final BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String fileKeyOf(final BasicFileAttributes attributes) {
+        final Object key = attributes.fileKey();
+        return key == null ? "" : key.toString();
+    }
+
+    /**
+     * Checks a length read from the file before allocating, so a corrupted file is rebuilt instead of exhausting memory.
+     */
+    private static int readLength(final ByteBuffer buffer, final int length) {
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return length;
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[readLength(buffer, buffer.getInt())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(final DataOutputStream out, final String s) throws IOException {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private record Entry(long size, long modified, String fileKey, byte[] digest) {
+        private boolean matches(final BasicFileAttributes attributes) {
+            return size == attributes.size()
+                    && modified == modifiedOf(attributes)
+                    && fileKey.equals(fileKeyOf(attributes));
+        }
+    }
+}
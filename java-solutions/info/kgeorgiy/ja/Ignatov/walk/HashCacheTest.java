@@ -0,0 +1,145 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class HashCacheTest {
+    private static final List<HashAlgorithm> ALGORITHMS = List.of(HashAlgorithm.SHA1);
+    private static final byte[] DIGEST = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20};
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path cacheFile;
+    private Path file;
+
+    @Before
+    public void createFiles() throws IOException {
+        cacheFile = folder.getRoot().toPath().resolve("cache");
+        file = folder.newFile().toPath();
+        Files.writeString(file, "content");
+        // older than the run, so the cached hash is not racy
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+    }
+
+    private BasicFileAttributes attributes() throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+
+    private void saveEntry() throws IOException {
+        final HashCache cache = HashCache.load(cacheFile, ALGORITHMS);
+        Assert.assertNull("expected empty cache", cache.get(file.toString(), attributes()));
+        cache.put(file.toString(), attributes(), DIGEST);
+        cache.save();
+    }
+
+    @Test
+    public void test01() throws IOException {
+        saveEntry();
+        final HashCache cache = HashCache.load(cacheFile, ALGORITHMS);
+        Assert.assertArrayEquals("expected the saved digest", DIGEST, cache.get(file.toString(), attributes()));
+        Assert.assertNull("expected no digest of other path", cache.get(file + "x", attributes()));
+        cache.save();
+        Assert.assertArrayEquals("a used entry must be kept by the next save",
+                DIGEST, HashCache.load(cacheFile, ALGORITHMS).get(file.toString(), attributes()));
+    }
+
+    @Test
+    public void test02() throws IOException {
+        saveEntry();
+        HashCache.load(cacheFile, ALGORITHMS).save();
+        Assert.assertNull("an unused entry must be dropped by the next save",
+                HashCache.load(cacheFile, ALGORITHMS).get(file.toString(), attributes()));
+    }
+
+    @Test
+    public void test03() throws IOException {
+        saveEntry();
+        Assert.assertNull("expected no digests for other algorithms",
+                HashCache.load(cacheFile, List.of(HashAlgorithm.SHA256)).get(file.toString(), attributes()));
+        Files.writeString(file, "changed content");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1)));
+        Assert.assertNull("expected no digest of a changed file",
+                HashCache.load(cacheFile, ALGORITHMS).get(file.toString(), attributes()));
+    }
+
+    @Test
+    public void test04() throws IOException {
+        // modified just before the run, so it could be written again without changing the metadata
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        saveEntry();
+        Assert.assertNull("expected no digest of a racy file",
+                HashCache.load(cacheFile, ALGORITHMS).get(file.toString(), attributes()));
+    }
+
+    @Test
+    public void test05() throws IOException {
+        saveEntry();
+        final byte[] bytes = Files.readAllBytes(cacheFile);
+        for (final int length : new int[]{0, 3, bytes.length / 2, bytes.length - 1}) {
+            Files.write(cacheFile, Arrays.copyOf(bytes, length));
+            Assert.assertNull("expected empty cache from the file truncated to " + length,
+                    HashCache.load(cacheFile, ALGORITHMS).get(file.toString(), attributes()));
+        }
+    }
+
+    @Test
+    public void test06() throws IOException {
+        final byte[] signature = ALGORITHMS.toString().getBytes(StandardCharsets.UTF_8);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(cacheFile))) {
+            out.writeInt(0x57484332);
+            out.writeInt(signature.length);
+            out.write(signature);
+            out.writeLong(System.nanoTime());
+            out.writeInt(1);
+            // a corrupted length must not be allocated
+            out.writeInt(Integer.MAX_VALUE);
+        }
+        final HashCache cache = HashCache.load(cacheFile, ALGORITHMS);
+        Assert.assertNull("expected empty cache from the corrupted file", cache.get(file.toString(), attributes()));
+        cache.put(file.toString(), attributes(), DIGEST);
+        cache.save();
+        Assert.assertArrayEquals("expected the rebuilt cache",
+                DIGEST, HashCache.load(cacheFile, ALGORITHMS).get(file.toString(), attributes()));
+    }
+
+    @Test
+    public void test07() throws IOException {
+        final Path cache = folder.getRoot().toPath().resolve("hashes");
+        final FileHasher first = new FileHasher(new ChannelReadStrategy(16), ALGORITHMS,
+                HashCache.load(cache, ALGORITHMS), new WalkStats());
+        final String expected = first.columns(first.hash(file));
+        first.commit();
+        final WalkStats stats = new WalkStats();
+        final FileHasher second = new FileHasher(new ChannelReadStrategy(16), ALGORITHMS,
+                HashCache.load(cache, ALGORITHMS), stats);
+        Assert.assertEquals("expected the same hash from the cache", expected, second.columns(second.hash(file)));
+        Assert.assertEquals("expected the file not to be read", 0, stats.getFiles());
+        Assert.assertEquals("expected a cache hit", 1, stats.getCachedFiles());
+    }
+
+    @Test
+    public void test08() throws IOException {
+        // a hash of other length than the one of the algorithms must not be used
+        final HashCache written = HashCache.load(cacheFile, ALGORITHMS);
+        written.put(file.toString(), attributes(), Arrays.copyOf(DIGEST, 5));
+        written.save();
+        final HashCache cache = HashCache.load(cacheFile, ALGORITHMS);
+        Assert.assertNull("expected no hash of other length", cache.get(file.toString(), attributes()));
+
+        final FileHasher hasher = new FileHasher(new ChannelReadStrategy(16), ALGORITHMS, cache, new WalkStats());
+        final FileHasher plain = new FileHasher(new ChannelReadStrategy(16), ALGORITHMS, null);
+        Assert.assertEquals("expected the file to be hashed again",
+                plain.columns(plain.hash(file)), hasher.columns(hasher.hash(file)));
+    }
+}
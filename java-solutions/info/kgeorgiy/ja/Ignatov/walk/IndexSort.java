@@ -0,0 +1,54 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Stable sort of {@code int} indices by a comparator, without boxing them into {@link Integer}.
+ *
+ * @author Ignatov Nikolay
+ */
+/*package-private*/ final class IndexSort {
+    private static final int INSERTION_THRESHOLD = 16;
+
+    private IndexSort() {
+    }
+
+    /*package-private*/ static int[] range(final int size) {
+        final int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    /*package-private*/ static void sort(final int[] indices, final IntBinaryOperator comparator) {
+        sort(indices, indices.clone(), 0, indices.length, comparator);
+    }
+
+    // sorts the range of the target using the same range of the source as the merge buffer
+    private static void sort(final int[] target, final int[] source, final int from, final int to,
+                             final IntBinaryOperator comparator) {
+        if (to - from <= INSERTION_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                final int value = target[i];
+                int j = i - 1;
+                while (j >= from && comparator.applyAsInt(target[j], value) > 0) {
+                    target[j + 1] = target[j];
+                    j--;
+                }
+                target[j + 1] = value;
+            }
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        sort(source, target, from, middle, comparator);
+        sort(source, target, middle, to, comparator);
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right >= to || left < middle && comparator.applyAsInt(source[left], source[right]) <= 0) {
+                target[i] = source[left++];
+            } else {
+                target[i] = source[right++];
+            }
+        }
+    }
+}
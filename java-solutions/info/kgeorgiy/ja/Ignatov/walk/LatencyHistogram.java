@@ -0,0 +1,73 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies with power-of-two buckets.
+ * Percentiles are reported as the upper bounds of the buckets, so they are accurate up to a factor of two.
+ *
+ * @author Ignatov Nikolay
+ */
+public class LatencyHistogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(value | 1));
+        count.increment();
+        total.add(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * Returns the upper bound of the latency of the specified share of the recorded values.
+     *
+     * @param percentile share of the values in percents, from 0 to 100
+     * @return latency in nanoseconds, 0 if nothing is recorded
+     */
+    public long percentile(final double percentile) {
+        final long all = getCount();
+        if (all == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(all * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < Long.SIZE; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return i == Long.SIZE - 1 ? Long.MAX_VALUE : 2L << i;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Formats count, mean, median, 99th percentile and total time.
+     *
+     * @return one-line summary
+     */
+    public String summary() {
+        final long all = getCount();
+        return String.format("count %d, mean %.1f us, p50 <= %.1f us, p99 <= %.1f us, total %.3f s",
+                all,
+                all == 0 ? 0.0 : getTotalNanos() / 1e3 / all,
+                percentile(50) / 1e3,
+                percentile(99) / 1e3,
+                getTotalNanos() / 1e9);
+    }
+}
@@ -0,0 +1,375 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Binary index of a walk output, which is memory-mapped and searched without reading the whole file.
+ * <p>
+ * Usage:
+ * <ul>
+ *     <li>{@code ManifestIndex build <output> <index>} builds the index of a walk output</li>
+ *     <li>{@code ManifestIndex path <index> <path>} prints the hashes of the path</li>
+ *     <li>{@code ManifestIndex hash <index> <hex>} prints the paths with the hash starting with the specified bytes</li>
+ * </ul>
+ * The columns of the output are defined by {@code walk.digests}. The index may also be built right after a walk
+ * by setting {@code walk.index} to the path of the index file.
+ * <p>
+ * File format, all numbers are big-endian:
+ * <ul>
+ *     <li>header: magic, number of hash columns, length of every column, number of entries</li>
+ *     <li>UTF-8 bytes of all the paths in the sorted order</li>
+ *     <li>records sorted by path: offset of the path bytes (long), length of the path bytes (int), hashes</li>
+ *     <li>records sorted by hashes and then by path: hashes, number of the record sorted by path (int)</li>
+ * </ul>
+ * Records have fixed size, so both lookups are binary searches over the mapped file.
+ *
+ * @author Ignatov Nikolay
+ */
+public class ManifestIndex {
+    private static final int MAGIC = 0x574D4931; // "WMI1"
+
+    private final MappedFile file;
+    private final int[] lengths;
+    private final int hashLength;
+    private final int count;
+    private final long pathRecords;
+    private final long hashRecords;
+    private final int pathRecord;
+    private final int hashRecord;
+    private final long heap;
+
+    private ManifestIndex(final MappedFile file) throws WalkException {
+        this.file = file;
+        if (file.size() < 3 * Integer.BYTES || file.getInt(0) != MAGIC) {
+            throw new WalkException("Not a manifest index");
+        }
+        // the header is checked against the file size before allocating, so a corrupted index is rejected
+        final int columns = file.getInt(Integer.BYTES);
+        long position = 2 * Integer.BYTES;
+        if (columns <= 0 || columns > (file.size() - position) / Integer.BYTES - 1) {
+            throw new WalkException("Corrupted manifest index: invalid number of columns " + columns);
+        }
+        lengths = new int[columns];
+        long total = 0;
+        for (int i = 0; i < lengths.length; i++, position += Integer.BYTES) {
+            lengths[i] = file.getInt(position);
+            total += lengths[i];
+            if (lengths[i] <= 0 || total > Math.min(file.size(), Integer.MAX_VALUE / 2 - Long.BYTES)) {
+                throw new WalkException("Corrupted manifest index: invalid length of column " + i + ": " + lengths[i]);
+            }
+        }
+        hashLength = (int) total;
+        count = file.getInt(position);
+        heap = position + Integer.BYTES;
+        pathRecord = Long.BYTES + Integer.BYTES + hashLength;
+        hashRecord = hashLength + Integer.BYTES;
+        if (count < 0 || count > (file.size() - heap) / (pathRecord + hashRecord)) {
+            throw new WalkException("Corrupted manifest index: invalid number of entries " + count);
+        }
+        hashRecords = file.size() - (long) count * hashRecord;
+        pathRecords = hashRecords - (long) count * pathRecord;
+        // the path bytes end where the records start, so a truncated or extended file is rejected
+        final long last = pathRecords + (long) (count - 1) * pathRecord;
+        final long paths = count == 0 ? 0 : file.getLong(last) + file.getInt(last + Long.BYTES);
+        if (paths != pathRecords - heap) {
+            throw new WalkException("Corrupted manifest index: the records don't match the size of the file");
+        }
+    }
+
+    /**
+     * Maps the index.
+     *
+     * @param index index file
+     * @return opened index
+     * @throws WalkException when the index can`t be read
+     */
+    public static ManifestIndex open(final Path index) throws WalkException {
+        try {
+            return new ManifestIndex(new MappedFile(index));
+        } catch (IOException e) {
+            throw new WalkException("Some problems occurred while reading the index. " + e.getMessage());
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during reading the index. " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (WalkException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void run(String[] args) throws WalkException {
+        if (args == null || args.length != 3 || args[0] == null || args[1] == null || args[2] == null) {
+            throw new WalkException("Usage: ManifestIndex (build <output> <index> | path <index> <path> | hash <index> <hex>)");
+        }
+        final Path file;
+        try {
+            file = Paths.get(args[1]);
+        } catch (InvalidPathException e) {
+            throw new WalkException("Invalid path " + args[1] + ". " + e.getMessage());
+        }
+        switch (args[0]) {
+            case "build" -> {
+                try {
+                    build(file, Paths.get(args[2]), HashAlgorithm.parse(System.getProperty("walk.digests", "SHA-1")));
+                } catch (InvalidPathException e) {
+                    throw new WalkException("Invalid path of the index. " + e.getMessage());
+                }
+            }
+            case "path" -> {
+                final ManifestIndex index = open(file);
+                final byte[] hash = index.findHash(args[2]);
+                System.out.println(hash == null ? "Not found" : index.format(hash));
+            }
+            case "hash" -> {
+                final byte[] prefix;
+                try {
+                    prefix = HexFormat.of().parseHex(args[2].replace(" ", ""));
+                } catch (IllegalArgumentException e) {
+                    throw new WalkException("Invalid hexadecimal hash " + args[2]);
+                }
+                open(file).findPaths(prefix).forEach(System.out::println);
+            }
+            default -> throw new WalkException("Unknown command " + args[0]);
+        }
+    }
+
+    /**
+     * Builds the index if the system property {@code walk.index} is set.
+     *
+     * @param output     walk output to index
+     * @param algorithms algorithms of the output columns
+     * @throws WalkException when the index can`t be built
+     */
+    public static void buildFromProperties(final Path output, final List<HashAlgorithm> algorithms)
+            throws WalkException {
+        final String index = System.getProperty("walk.index");
+        if (index != null) {
+            try {
+                build(output, Paths.get(index), algorithms);
+            } catch (InvalidPathException e) {
+                throw new WalkException("Invalid path of the index. " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the hashes of the path.
+     *
+     * @param path path as written in the walk output
+     * @return hashes of all the columns one after another or {@code null} if the path is not in the index
+     */
+    public byte[] findHash(final String path) {
+        final byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final long record = pathRecords + (long) middle * pathRecord;
+            final int c = file.compare(heap + file.getLong(record), file.getInt(record + Long.BYTES), key, false);
+            if (c < 0) {
+                low = middle + 1;
+            } else if (c > 0) {
+                high = middle - 1;
+            } else {
+                final byte[] hash = new byte[hashLength];
+                file.get(record + Long.BYTES + Integer.BYTES, hash);
+                return hash;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the paths having hashes starting with the specified bytes.
+     *
+     * @param prefix first bytes of the hashes, like the hash of the first column
+     * @return paths in the sorted order
+     */
+    public List<String> findPaths(final byte[] prefix) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (file.compare(hashRecords + (long) middle * hashRecord, hashLength, prefix, true) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        final List<String> paths = new ArrayList<>();
+        for (int i = low; i < count; i++) {
+            final long record = hashRecords + (long) i * hashRecord;
+            if (file.compare(record, hashLength, prefix, true) != 0) {
+                break;
+            }
+            paths.add(path(file.getInt(record + hashLength)));
+        }
+        return paths;
+    }
+
+    private String path(final int number) {
+        final long record = pathRecords + (long) number * pathRecord;
+        final byte[] bytes = new byte[file.getInt(record + Long.BYTES)];
+        file.get(heap + file.getLong(record), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String format(final byte[] hash) {
+        final StringBuilder builder = new StringBuilder();
+        int offset = 0;
+        for (final int length : lengths) {
+            if (offset > 0) {
+                builder.append(' ');
+            }
+            builder.append(HexFormat.of().formatHex(hash, offset, offset += length));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Builds the index of a walk output. The entries are sorted in memory.
+     *
+     * @param output     walk output, lines of hash columns followed by a path
+     * @param index      index file to write
+     * @param algorithms algorithms of the output columns
+     * @throws WalkException when the output can`t be read or the index can`t be written
+     */
+    public static void build(final Path output, final Path index, final List<HashAlgorithm> algorithms)
+            throws WalkException {
+        final int[] lengths = algorithms.stream().mapToInt(HashAlgorithm::length).toArray();
+        final int hashLength = Arrays.stream(lengths).sum();
+        final List<byte[]> paths = new ArrayList<>();
+        final Hashes hashes = new Hashes(hashLength);
+        try (BufferedReader reader = Files.newBufferedReader(output)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int entry = hashes.add();
+                final byte[] chunk = hashes.chunk(entry);
+                int position = 0;
+                int offset = hashes.offset(entry);
+                for (final int length : lengths) {
+                    final int end = position + 2 * length;
+                    if (end >= line.length() || line.charAt(end) != ' ') {
+                        throw new WalkException("Invalid line of the walk output: " + line);
+                    }
+                    try {
+                        System.arraycopy(HexFormat.of().parseHex(line, position, end), 0, chunk, offset, length);
+                    } catch (IllegalArgumentException e) {
+                        throw new WalkException("Invalid hash in the walk output: " + line);
+                    }
+                    position = end + 1;
+                    offset += length;
+                }
+                paths.add(line.substring(position).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new WalkException("Some problems occurred while reading the walk output. " + e.getMessage());
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during reading the walk output. " + e.getMessage());
+        }
+        write(index, lengths, paths, hashes);
+    }
+
+    private static void write(final Path index, final int[] lengths, final List<byte[]> paths, final Hashes hashes)
+            throws WalkException {
+        final int count = paths.size();
+
+        final int[] byPath = IndexSort.range(count);
+        IndexSort.sort(byPath, (a, b) -> Arrays.compareUnsigned(paths.get(a), paths.get(b)));
+        final int[] rank = new int[count];
+        for (int i = 0; i < count; i++) {
+            rank[byPath[i]] = i;
+        }
+        final int[] byHash = IndexSort.range(count);
+        IndexSort.sort(byHash, (a, b) -> {
+            final int c = hashes.compare(a, b);
+            return c != 0 ? c : Integer.compare(rank[a], rank[b]);
+        });
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(lengths.length);
+            for (final int length : lengths) {
+                out.writeInt(length);
+            }
+            out.writeInt(count);
+            for (final int i : byPath) {
+                out.write(paths.get(i));
+            }
+            long offset = 0;
+            for (final int i : byPath) {
+                out.writeLong(offset);
+                out.writeInt(paths.get(i).length);
+                hashes.write(out, i);
+                offset += paths.get(i).length;
+            }
+            for (final int i : byHash) {
+                hashes.write(out, i);
+                out.writeInt(rank[i]);
+            }
+        } catch (IOException e) {
+            throw new WalkException("Some problems occurred while writing the index. " + e.getMessage());
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during writing the index. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hashes of the entries, kept in chunks of whole records,
+     * so the offsets stay within {@code int} while the total size is not limited by a single array.
+     */
+    private static final class Hashes {
+        private static final int CHUNK_BYTES = 1 << 24;
+
+        private final int length;
+        private final int chunkRecords;
+        private final List<byte[]> chunks = new ArrayList<>();
+        private int size;
+
+        private Hashes(final int length) {
+            this.length = length;
+            chunkRecords = CHUNK_BYTES / Math.max(1, length);
+        }
+
+        private int add() {
+            if (size % chunkRecords == 0) {
+                chunks.add(new byte[chunkRecords * length]);
+            }
+            return size++;
+        }
+
+        private byte[] chunk(final int entry) {
+            return chunks.get(entry / chunkRecords);
+        }
+
+        private int offset(final int entry) {
+            return entry % chunkRecords * length;
+        }
+
+        private int compare(final int a, final int b) {
+            final int offsetA = offset(a);
+            final int offsetB = offset(b);
+            return Arrays.compareUnsigned(chunk(a), offsetA, offsetA + length, chunk(b), offsetB, offsetB + length);
+        }
+
+        private void write(final DataOutputStream out, final int entry) throws IOException {
+            out.write(chunk(entry), offset(entry), length);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class ManifestIndexTest {
+    private static final List<HashAlgorithm> ALGORITHMS = List.of(HashAlgorithm.CRC32C, HashAlgorithm.XXH64);
+    private static final int HASH_LENGTH = 12;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(239);
+
+    private record Entry(String path, byte[] hash) {
+    }
+
+    private String randomPath(final int number) {
+        final String[] parts = {"a", "b", "dir", "файл", "日本", " space", "x.txt"};
+        final StringBuilder path = new StringBuilder();
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            path.append(parts[random.nextInt(parts.length)]).append('/');
+        }
+        return path.append(number).toString();
+    }
+
+    private List<Entry> randomEntries(final int size) {
+        final List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            final byte[] hash = new byte[HASH_LENGTH];
+            if (!entries.isEmpty() && random.nextInt(4) == 0) {
+                // equal and partially equal hashes
+                final byte[] other = entries.get(random.nextInt(entries.size())).hash;
+                System.arraycopy(other, 0, hash, 0, random.nextInt(HASH_LENGTH + 1));
+            } else {
+                random.nextBytes(hash);
+            }
+            entries.add(new Entry(randomPath(i), hash));
+        }
+        return entries;
+    }
+
+    private Path build(final List<Entry> entries) throws IOException, WalkException {
+        final Path output = folder.newFile().toPath();
+        final HexFormat hex = HexFormat.of();
+        Files.write(output, entries.stream()
+                .map(entry -> hex.formatHex(entry.hash, 0, 4) + " " + hex.formatHex(entry.hash, 4, HASH_LENGTH)
+                        + " " + entry.path)
+                .collect(Collectors.toList()));
+        final Path index = folder.newFile().toPath();
+        ManifestIndex.build(output, index, ALGORITHMS);
+        return index;
+    }
+
+    private static byte[] utf8(final String path) {
+        return path.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> expectedPaths(final List<Entry> entries, final byte[] prefix) {
+        return entries.stream()
+                .filter(entry -> Arrays.equals(entry.hash, 0, prefix.length, prefix, 0, prefix.length))
+                .sorted(Comparator.<Entry, byte[]>comparing(entry -> entry.hash, Arrays::compareUnsigned)
+                        .thenComparing(entry -> utf8(entry.path), Arrays::compareUnsigned))
+                .map(Entry::path)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void test01() throws IOException, WalkException {
+        for (final int size : new int[]{0, 1, 10, 1000}) {
+            final List<Entry> entries = randomEntries(size);
+            final ManifestIndex index = ManifestIndex.open(build(entries));
+            for (final Entry entry : entries) {
+                Assert.assertArrayEquals("expected the hash of " + entry.path, entry.hash, index.findHash(entry.path));
+                Assert.assertNull("expected no hash of a missing path", index.findHash(entry.path + "/"));
+            }
+            Assert.assertNull("expected no hash of the empty path", index.findHash(""));
+            Assert.assertNull("expected no hash of a missing path", index.findHash("missing"));
+        }
+    }
+
+    @Test
+    public void test02() throws IOException, WalkException {
+        final List<Entry> entries = randomEntries(1000);
+        final ManifestIndex index = ManifestIndex.open(build(entries));
+        Assert.assertEquals("expected all the paths for the empty prefix",
+                expectedPaths(entries, new byte[0]), index.findPaths(new byte[0]));
+        for (int test = 0; test < 300; test++) {
+            final byte[] hash = entries.get(random.nextInt(entries.size())).hash;
+            final byte[] prefix = Arrays.copyOf(hash, random.nextInt(HASH_LENGTH + 1));
+            if (random.nextInt(4) == 0 && prefix.length > 0) {
+                prefix[prefix.length - 1]++;
+            }
+            Assert.assertEquals("expected the paths for the prefix " + HexFormat.of().formatHex(prefix),
+                    expectedPaths(entries, prefix), index.findPaths(prefix));
+        }
+        Assert.assertEquals("expected no paths for a prefix longer than the hashes",
+                List.of(), index.findPaths(new byte[HASH_LENGTH + 1]));
+    }
+
+    @Test
+    public void test03() throws IOException, WalkException {
+        final Path file = build(randomEntries(10));
+        final byte[] bytes = Files.readAllBytes(file);
+        final List<byte[]> corrupted = new ArrayList<>();
+        corrupted.add(new byte[0]);
+        corrupted.add(Arrays.copyOf(bytes, 10));
+        corrupted.add(Arrays.copyOf(bytes, bytes.length - 1));
+        final byte[] magic = bytes.clone();
+        magic[0] ^= 1;
+        corrupted.add(magic);
+        // columns, lengths of the columns, number of entries
+        for (final int[] fields : new int[][]{
+                {0, 4, 8, 10}, {-1, 4, 8, 10}, {Integer.MAX_VALUE, 4, 8, 10},
+                {2, 0, 8, 10}, {2, -4, 8, 10}, {2, 4, Integer.MAX_VALUE, 10}, {2, Integer.MAX_VALUE, 8, 10},
+                {2, 4, 8, -1}, {2, 4, 8, 11}, {2, 4, 8, Integer.MAX_VALUE}
+        }) {
+            final byte[] header = bytes.clone();
+            final ByteBuffer buffer = ByteBuffer.wrap(header);
+            for (int i = 0; i < fields.length; i++) {
+                buffer.putInt(Integer.BYTES * (i + 1), fields[i]);
+            }
+            corrupted.add(header);
+        }
+        for (int i = 0; i < corrupted.size(); i++) {
+            Files.write(file, corrupted.get(i));
+            Assert.assertThrows("expected the corrupted index " + i + " to be rejected", WalkException.class,
+                    () -> ManifestIndex.open(file));
+        }
+        Files.write(file, bytes);
+        Assert.assertNull("expected the restored index to be read", ManifestIndex.open(file).findHash("missing"));
+    }
+}
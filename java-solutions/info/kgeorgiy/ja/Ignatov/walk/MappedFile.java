@@ -0,0 +1,89 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Read-only memory mapping of a file of any size.
+ * The file is mapped by chunks, since a single {@link MappedByteBuffer} is limited to 2 GiB.
+ *
+ * @author Ignatov Nikolay
+ */
+/*package-private*/ class MappedFile {
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK = 1L << CHUNK_BITS;
+
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    /*package-private*/ MappedFile(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            size = channel.size();
+            chunks = new MappedByteBuffer[(int) ((size + CHUNK - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                final long position = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK, size - position));
+            }
+        }
+    }
+
+    /*package-private*/ long size() {
+        return size;
+    }
+
+    /*package-private*/ byte get(final long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & (CHUNK - 1)));
+    }
+
+    /*package-private*/ int getInt(final long position) {
+        final int offset = (int) (position & (CHUNK - 1));
+        if (offset <= CHUNK - Integer.BYTES) {
+            return chunks[(int) (position >>> CHUNK_BITS)].getInt(offset);
+        }
+        return (int) getBytes(position, Integer.BYTES);
+    }
+
+    /*package-private*/ long getLong(final long position) {
+        final int offset = (int) (position & (CHUNK - 1));
+        if (offset <= CHUNK - Long.BYTES) {
+            return chunks[(int) (position >>> CHUNK_BITS)].getLong(offset);
+        }
+        return getBytes(position, Long.BYTES);
+    }
+
+    /*package-private*/ void get(final long position, final byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = get(position + i);
+        }
+    }
+
+    /**
+     * Compares the bytes of the file with the key as unsigned numbers.
+     *
+     * @param position position of the bytes in the file
+     * @param length   number of the bytes
+     * @param key      key to compare with
+     * @param prefix   compare only the first {@code key.length} bytes, so any key prefix is equal
+     * @return negative, zero or positive like {@link java.util.Comparator}
+     */
+    /*package-private*/ int compare(final long position, final int length, final byte[] key, final boolean prefix) {
+        final int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            final int c = Byte.compareUnsigned(get(position + i), key[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return prefix && length >= key.length ? 0 : Integer.compare(length, key.length);
+    }
+
+    private long getBytes(final long position, final int bytes) {
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            value = value << Byte.SIZE | get(position + i) & 0xFF;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,35 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Consumer;
+
+/**
+ * Reads files through {@link java.nio.MappedByteBuffer} windows, so the data is not copied into user buffers.
+ *
+ * @author Ignatov Nikolay
+ */
+public class MappedReadStrategy implements ReadStrategy {
+    /*package-private*/ static final long DEFAULT_WINDOW_SIZE = 1 << 26;
+    private final long windowSize;
+
+    /**
+     * Creates a strategy mapping windows of the specified size.
+     *
+     * @param windowSize size of a single mapping in bytes, must be positive and fit into an int
+     */
+    public MappedReadStrategy(final long windowSize) {
+        if (windowSize <= 0 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Illegal window size");
+        }
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    public void read(final FileChannel channel, final long size, final Consumer<ByteBuffer> sink) throws IOException {
+        for (long position = 0; position < size; position += windowSize) {
+            sink.accept(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position)));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two outputs of {@link RecursiveWalk} written in the Merkle mode.
+ * Usage: {@code MerkleDiff <old> <new> <output>}, the outputs must be written with the same {@code walk.digests}.
+ * <p>
+ * Subtrees are compared top-down: a directory with equal hashes in both outputs is skipped
+ * without looking at its entries, so the comparison takes time proportional to the changed part of the trees.
+ * For every difference the line {@code - <path>} (removed), {@code + <path>} (added)
+ * or {@code ~ <path>} (changed file) is written. Removed or added directory is reported as a single line.
+ * <p>
+ * The listed roots are matched in the order of the outputs, and the entries inside them by the path relative
+ * to their root, so the outputs of replicas stored under different roots can be compared.
+ *
+ * @author Ignatov Nikolay
+ */
+public class MerkleDiff {
+    public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (WalkException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void run(String[] args) throws WalkException {
+        if (args == null || args.length < 3) {
+            throw new WalkException("Not enough arguments");
+        }
+        if (args[0] == null || args[1] == null || args[2] == null) {
+            throw new WalkException("Some of arguments is null");
+        }
+        final Path oldManifest, newManifest, output;
+        try {
+            oldManifest = Paths.get(args[0]);
+            newManifest = Paths.get(args[1]);
+            output = Paths.get(args[2]);
+        } catch (InvalidPathException e) {
+            throw new WalkException("Invalid path of the input or output file. " + e.getMessage());
+        }
+        final int columns = HashAlgorithm.parse(System.getProperty("walk.digests", "SHA-1")).size();
+        final Manifest before = Manifest.read(oldManifest, columns);
+        final Manifest after = Manifest.read(newManifest, columns);
+        try (BufferedWriter writer = Files.newBufferedWriter(output)) {
+            compare(before, 0, before.size(), after, 0, after.size(), writer);
+        } catch (IOException e) {
+            throw new WalkException("Some problems occurred while processing the output file. " + e.getMessage());
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during processing the output file" + e.getMessage());
+        }
+    }
+
+    /**
+     * Compares two ranges of sibling entries.
+     */
+    private static void compare(
+            final Manifest before, final int beforeFrom, final int beforeTo,
+            final Manifest after, final int afterFrom, final int afterTo,
+            final Writer writer
+    ) throws IOException {
+        final Map<String, Integer> afterSiblings = new HashMap<>();
+        for (int i = afterFrom; i < afterTo; i = after.ends[i]) {
+            afterSiblings.put(after.key(i), i);
+        }
+        for (int i = beforeFrom; i < beforeTo; i = before.ends[i]) {
+            final Integer j = afterSiblings.remove(before.key(i));
+            if (j == null) {
+                report(writer, '-', before.paths.get(i));
+            } else if (!before.hashes.get(i).equals(after.hashes.get(j))) {
+                if (before.ends[i] == i + 1 && after.ends[j] == j + 1) {
+                    report(writer, '~', before.paths.get(i));
+                } else {
+                    compare(before, i + 1, before.ends[i], after, j + 1, after.ends[j], writer);
+                }
+            }
+        }
+        for (int j = afterFrom; j < afterTo; j = after.ends[j]) {
+            if (afterSiblings.containsKey(after.key(j))) {
+                report(writer, '+', after.paths.get(j));
+            }
+        }
+    }
+
+    private static void report(final Writer writer, final char change, final String path) throws IOException {
+        writer.write(change);
+        writer.write(' ');
+        writer.write(path);
+        writer.write(System.lineSeparator());
+    }
+
+    /**
+     * Entries of an output in the pre-order with the end of the subtree of every entry
+     * and the length of the root path of every entry, or the negated number of a root counted from one.
+     */
+    private record Manifest(List<String> hashes, List<String> paths, int[] ends, int[] roots) {
+        private static Manifest read(final Path file, final int columns) throws WalkException {
+            final List<String> hashes = new ArrayList<>();
+            final List<String> paths = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int separator = -1;
+                    for (int i = 0; i < columns; i++) {
+                        separator = line.indexOf(' ', separator + 1);
+                        if (separator < 0) {
+                            throw new WalkException("Invalid line in " + file + ": " + line);
+                        }
+                    }
+                    hashes.add(line.substring(0, separator));
+                    paths.add(line.substring(separator + 1));
+                }
+            } catch (IOException e) {
+                throw new WalkException("Some problems occurred while reading " + file + ". " + e.getMessage());
+            } catch (SecurityException e) {
+                throw new WalkException("Access is denied during reading " + file + ". " + e.getMessage());
+            }
+
+            final int[] ends = new int[paths.size()];
+            final int[] roots = new int[paths.size()];
+            final Deque<Integer> open = new ArrayDeque<>();
+            int rootCount = 0;
+            for (int i = 0; i < paths.size(); i++) {
+                while (!open.isEmpty() && !isInside(paths.get(i), paths.get(open.peek()))) {
+                    ends[open.pop()] = i;
+                }
+                roots[i] = open.isEmpty() ? -++rootCount : paths.get(open.peekLast()).length();
+                open.push(i);
+            }
+            while (!open.isEmpty()) {
+                ends[open.pop()] = paths.size();
+            }
+            return new Manifest(hashes, paths, ends, roots);
+        }
+
+        /**
+         * Returns the key matching the entry with the entries of the other output.
+         */
+        private String key(final int entry) {
+            return roots[entry] < 0 ? "#" + -roots[entry] : paths.get(entry).substring(roots[entry]);
+        }
+
+        private static boolean isInside(final String path, final String directory) {
+            return path.length() > directory.length()
+                    && path.startsWith(directory)
+                    && (path.charAt(directory.length()) == File.separatorChar
+                    || directory.endsWith(File.separator));
+        }
+
+        private int size() {
+            return paths.size();
+        }
+    }
+}
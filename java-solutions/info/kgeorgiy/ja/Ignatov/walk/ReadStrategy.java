@@ -0,0 +1,40 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Consumer;
+
+/**
+ * The way file content is read and fed to the hashing code.
+ * Implementations must be thread-safe, since they are shared by the workers of {@link RecursiveWalk}.
+ *
+ * @author Ignatov Nikolay
+ */
+public interface ReadStrategy {
+    /**
+     * Reads the whole content of the channel and passes it to the sink block by block.
+     * Buffers passed to the sink are valid only during the call.
+     *
+     * @param channel channel opened for reading, positioned at the beginning of the file
+     * @param size    size of the file
+     * @param sink    consumer of the read blocks
+     * @throws IOException when the file can`t be read
+     */
+    void read(FileChannel channel, long size, Consumer<ByteBuffer> sink) throws IOException;
+
+    /**
+     * Creates the default strategy configured by the system properties
+     * {@code walk.bufferSize}, {@code walk.mapThreshold} and {@code walk.mapWindow}.
+     *
+     * @return files smaller than the map threshold are read through a reusable direct buffer,
+     * larger ones are memory-mapped window by window
+     */
+    static ReadStrategy fromProperties() {
+        return new ThresholdReadStrategy(
+                Long.getLong("walk.mapThreshold", ThresholdReadStrategy.DEFAULT_MAP_THRESHOLD),
+                new ChannelReadStrategy(Integer.getInteger("walk.bufferSize", ChannelReadStrategy.DEFAULT_BUFFER_SIZE)),
+                new MappedReadStrategy(Long.getLong("walk.mapWindow", MappedReadStrategy.DEFAULT_WINDOW_SIZE))
+        );
+    }
+}
@@ -1,4 +1,204 @@
 package info.kgeorgiy.ja.Ignatov.walk;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Hashes files and whole directory trees listed in the input file.
+ * Directory traversal and hashing are split into fork-join tasks executed by a work-stealing pool.
+ * Output lines keep the input order, entries of a directory follow in traversal order
+ * (children are sorted by name, so the output is deterministic).
+ * <p>
+ * In the Merkle mode every directory is written too, before its entries, with a hash computed from
+ * the names, types and hashes of its children. Equal directory hashes mean equal subtrees,
+ * so two outputs may be compared top-down by {@link MerkleDiff} skipping unchanged subtrees.
+ * <p>
+ * Lines are not collected into lists: every task keeps only its own line and the tasks of its children,
+ * which are written one by one and released at once. Without the Merkle mode a directory doesn't wait
+ * for its children, so the output of a tree is written while the tree is still traversed.
+ *
+ * @author Ignatov Nikolay
+ */
 public class RecursiveWalk {
+    private static final int MAX_PENDING = 1024;
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (WalkException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void run(String[] args) throws WalkException {
+        final FileHasher hasher = FileHasher.fromProperties();
+        run(args, Runtime.getRuntime().availableProcessors(), hasher, FlushPolicy.fromProperties(),
+                Boolean.getBoolean("walk.merkle"));
+        ManifestIndex.buildFromProperties(Paths.get(args[1]), hasher.getAlgorithms());
+    }
+
+    public static void run(String[] args, int threads, FileHasher hasher, FlushPolicy flushPolicy, boolean merkle)
+            throws WalkException {
+        if (threads <= 0) {
+            throw new WalkException("Illegal threads number");
+        }
+        final Path[] paths = Walker.getPaths(args);
+        final Path input = paths[0], output = paths[1];
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try (BufferedReader bufferedReader = Files.newBufferedReader(input)) {
+            try (BufferedWriter bufferedWriter = Files.newBufferedWriter(output)) {
+                final Deque<ForkJoinTask<Subtree>> pending = new ArrayDeque<>();
+                String filename;
+                while ((filename = bufferedReader.readLine()) != null) {
+                    pending.add(pool.submit(createTask(filename, hasher, merkle)));
+                    // finished heads are written at once, so memory is bounded by MAX_PENDING subtrees
+                    while (!pending.isEmpty() && (pending.peek().isDone() || pending.size() > MAX_PENDING)) {
+                        write(bufferedWriter, pending.poll().join(), flushPolicy);
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    write(bufferedWriter, pending.poll().join(), flushPolicy);
+                }
+            } catch (IOException e) {
+                throw new WalkException("Some problems occurred while processing the output or input file. " + e.getMessage());
+            } catch (SecurityException e) {
+                throw new WalkException("Access is denied during processing the output file" + e.getMessage());
+            }
+        } catch (IOException e) {
+            throw new WalkException("Some problems occurred while processing the input file. " + e.getMessage());
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during processing the input file" + e.getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+        hasher.commit();
+    }
+
+    private static void write(final BufferedWriter writer, final Subtree subtree, final FlushPolicy flushPolicy)
+            throws IOException {
+        if (subtree.line != null) {
+            writer.write(subtree.line);
+            writer.newLine();
+            flushPolicy.lineWritten(writer);
+        }
+        if (subtree.children != null) {
+            for (final ListIterator<PathTask> it = subtree.children.listIterator(); it.hasNext(); ) {
+                final PathTask child = it.next();
+                // a written child is dropped, so only the unwritten part of the tree stays in memory
+                it.set(null);
+                write(writer, child.join(), flushPolicy);
+            }
+        }
+    }
+
+    private static RecursiveTask<Subtree> createTask(final String filename, final FileHasher hasher,
+                                                     final boolean merkle) {
+        try {
+            return new PathTask(Paths.get(filename), filename, true, hasher, merkle);
+        } catch (InvalidPathException e) {
+            return new RecursiveTask<>() {
+                @Override
+                protected Subtree compute() {
+                    return new Subtree(null, false, hasher.columns(null) + " " + filename, null);
+                }
+            };
+        }
+    }
+
+    /**
+     * Result of a path task.
+     *
+     * @param hash      hash of the file or the directory, kept only in the Merkle mode
+     * @param directory whether the path is a directory
+     * @param line      output line of the path, {@code null} for a directory without the Merkle mode
+     * @param children  tasks of the children in traversal order, {@code null} for a file or an unreadable directory
+     */
+    private record Subtree(byte[] hash, boolean directory, String line, List<PathTask> children) {
+    }
+
+    private static final class PathTask extends RecursiveTask<Subtree> {
+        @Serial
+        private static final long serialVersionUID = 1414213562373095048L;
+
+        private final Path path;
+        private final String name;
+        private final boolean root;
+        private final FileHasher hasher;
+        private final boolean merkle;
+
+        private PathTask(final Path path, final String name, final boolean root, final FileHasher hasher,
+                         final boolean merkle) {
+            this.path = path;
+            this.name = name;
+            this.root = root;
+            this.hasher = hasher;
+            this.merkle = merkle;
+        }
+
+        @Override
+        protected Subtree compute() {
+            // symbolic links are followed only for paths listed in the input, so traversal can't loop
+            final boolean directory = root
+                    ? Files.isDirectory(path)
+                    : Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS);
+            if (!directory) {
+                final byte[] hash = hasher.hash(path);
+                final String line = hasher.columns(hash) + " " + name;
+                return new Subtree(merkle && hash != null ? hash.clone() : null, false, line, null);
+            }
+
+            final List<Path> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (final Path child : stream) {
+                    children.add(child);
+                }
+            } catch (IOException | SecurityException e) {
+                return new Subtree(null, true, hasher.columns(null) + " " + name, null);
+            }
+            children.sort(Comparator.comparing(child -> child.getFileName().toString()));
+
+            final List<PathTask> tasks = new ArrayList<>(children.size());
+            for (final Path child : children) {
+                tasks.add(new PathTask(child, child.toString(), false, hasher, merkle));
+            }
+            if (!merkle) {
+                // the children are joined by the writer, so the directory is done before its subtree
+                for (final PathTask task : tasks) {
+                    task.fork();
+                }
+                return new Subtree(null, true, null, tasks);
+            }
+
+            // the line of a directory precedes its entries and needs their hashes
+            invokeAll(tasks);
+            final List<FileHasher.Child> hashes = new ArrayList<>(tasks.size());
+            for (int i = 0; i < tasks.size(); i++) {
+                final Subtree subtree = tasks.get(i).join();
+                hashes.add(new FileHasher.Child(
+                        children.get(i).getFileName().toString(),
+                        subtree.directory,
+                        subtree.hash
+                ));
+            }
+            final byte[] hash = hasher.directoryHash(hashes);
+            return new Subtree(hash, true, hasher.columns(hash) + " " + name, tasks);
+        }
+    }
 }
@@ -0,0 +1,36 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Consumer;
+
+/**
+ * Chooses one of two strategies by the size of the file.
+ *
+ * @author Ignatov Nikolay
+ */
+public class ThresholdReadStrategy implements ReadStrategy {
+    /*package-private*/ static final long DEFAULT_MAP_THRESHOLD = 1 << 24;
+    private final long threshold;
+    private final ReadStrategy small;
+    private final ReadStrategy large;
+
+    /**
+     * Creates a strategy switching at the specified size.
+     *
+     * @param threshold files of at least this size are read by the {@code large} strategy
+     * @param small     strategy for smaller files
+     * @param large     strategy for larger files
+     */
+    public ThresholdReadStrategy(final long threshold, final ReadStrategy small, final ReadStrategy large) {
+        this.threshold = threshold;
+        this.small = small;
+        this.large = large;
+    }
+
+    @Override
+    public void read(final FileChannel channel, final long size, final Consumer<ByteBuffer> sink) throws IOException {
+        (size < threshold ? small : large).read(channel, size, sink);
+    }
+}
@@ -0,0 +1,162 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput counters and per-file latency histograms of the walk.
+ * Open time is dominated by the file system metadata, read time by the disk and digest time by the CPU,
+ * so their shares show what bounds a slow run.
+ *
+ * @author Ignatov Nikolay
+ */
+public class WalkStats implements WalkStatsMXBean {
+    private static final String NAME = "info.kgeorgiy.ja.Ignatov.walk:type=WalkStats";
+
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder cachedFiles = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram open = new LatencyHistogram();
+    private final LatencyHistogram read = new LatencyHistogram();
+    private final LatencyHistogram digest = new LatencyHistogram();
+    private long sampleTime = start;
+    private long sampleFiles;
+    private long sampleBytes;
+    private double filesRate;
+    private double bytesRate;
+
+    /**
+     * Creates statistics if the system property {@code walk.stats} is {@code true}.
+     * The statistics are registered as an MXBean and the summary is printed to the standard error at exit.
+     *
+     * @return statistics or {@code null} if they are turned off
+     */
+    public static WalkStats fromProperties() {
+        if (!Boolean.getBoolean("walk.stats")) {
+            return null;
+        }
+        final WalkStats stats = new WalkStats();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stats, new ObjectName(NAME));
+        } catch (InstanceAlreadyExistsException | MBeanRegistrationException
+                 | NotCompliantMBeanException | MalformedObjectNameException e) {
+            System.err.println("Can`t register walk statistics. " + e.getMessage());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.println(stats.getSummary())));
+        return stats;
+    }
+
+    /**
+     * Records a hashed file.
+     *
+     * @param openNanos   time of opening the file
+     * @param readNanos   time of reading the file, without the time of digesting
+     * @param digestNanos time of digesting the content
+     * @param size        number of hashed bytes
+     */
+    public void file(final long openNanos, final long readNanos, final long digestNanos, final long size) {
+        files.increment();
+        bytes.add(size);
+        open.record(openNanos);
+        read.record(readNanos);
+        digest.record(digestNanos);
+    }
+
+    /**
+     * Records a file answered from the cache.
+     */
+    public void cached() {
+        cachedFiles.increment();
+    }
+
+    /**
+     * Records a file which could not be read.
+     */
+    public void error() {
+        errors.increment();
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getCachedFiles() {
+        return cachedFiles.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        sample();
+        return filesRate;
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        sample();
+        return bytesRate;
+    }
+
+    @Override
+    public double getOpenP99Micros() {
+        return open.percentile(99) / 1e3;
+    }
+
+    @Override
+    public double getReadP99Micros() {
+        return read.percentile(99) / 1e3;
+    }
+
+    @Override
+    public double getDigestP99Micros() {
+        return digest.percentile(99) / 1e3;
+    }
+
+    @Override
+    public String getSummary() {
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        final double busy = Math.max(open.getTotalNanos() + read.getTotalNanos() + digest.getTotalNanos(), 1);
+        return String.format("Walk statistics: %d files (%d cached), %d bytes, %d errors in %.3f s"
+                        + " (%.1f files/s, %.1f MB/s)%n  open:   %s%n  read:   %s%n  digest: %s%n"
+                        + "  time share: open %.1f%%, read %.1f%%, digest %.1f%%",
+                getFiles(), getCachedFiles(), getBytes(), getErrors(), seconds,
+                getFiles() / seconds, getBytes() / seconds / 1e6,
+                open.summary(), read.summary(), digest.summary(),
+                100 * open.getTotalNanos() / busy, 100 * read.getTotalNanos() / busy,
+                100 * digest.getTotalNanos() / busy);
+    }
+
+    private synchronized void sample() {
+        final long now = System.nanoTime();
+        // calls closer than 100 ms reuse the previous rate, so the two getters of one poll agree
+        if (now - sampleTime < 100_000_000) {
+            return;
+        }
+        final long currentFiles = getFiles();
+        final long currentBytes = getBytes();
+        final double seconds = (now - sampleTime) / 1e9;
+        filesRate = (currentFiles - sampleFiles) / seconds;
+        bytesRate = (currentBytes - sampleBytes) / seconds;
+        sampleTime = now;
+        sampleFiles = currentFiles;
+        sampleBytes = currentBytes;
+    }
+}
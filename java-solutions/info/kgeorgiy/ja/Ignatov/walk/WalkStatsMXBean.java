@@ -0,0 +1,58 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+/**
+ * Management interface of {@link WalkStats}, registered as {@code info.kgeorgiy.ja.Ignatov.walk:type=WalkStats}.
+ *
+ * @author Ignatov Nikolay
+ */
+public interface WalkStatsMXBean {
+    /**
+     * @return number of hashed files
+     */
+    long getFiles();
+
+    /**
+     * @return number of files answered from the cache without reading
+     */
+    long getCachedFiles();
+
+    /**
+     * @return number of hashed bytes
+     */
+    long getBytes();
+
+    /**
+     * @return number of files which could not be read
+     */
+    long getErrors();
+
+    /**
+     * @return files per second since the previous call of this method or of {@link #getBytesPerSecond()}
+     */
+    double getFilesPerSecond();
+
+    /**
+     * @return bytes per second since the previous call of this method or of {@link #getFilesPerSecond()}
+     */
+    double getBytesPerSecond();
+
+    /**
+     * @return 99th percentile of the open time in microseconds
+     */
+    double getOpenP99Micros();
+
+    /**
+     * @return 99th percentile of the read time in microseconds
+     */
+    double getReadP99Micros();
+
+    /**
+     * @return 99th percentile of the digest time in microseconds
+     */
+    double getDigestP99Micros();
+
+    /**
+     * @return multi-line summary of the counters and latencies
+     */
+    String getSummary();
+}
@@ -0,0 +1,395 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running watch mode of the walk.
+ * Usage: {@code WalkWatcher <input> <output>}, the input lists files and directory trees like for {@link RecursiveWalk}.
+ * <p>
+ * After the initial hashing the trees are registered in a {@link WatchService} and only the changed files
+ * are hashed again. The table of hashes is written to the output, sorted by path,
+ * every {@code walk.dumpMillis} milliseconds and on the {@code dump} command from the standard input.
+ * The {@code stop} command writes the table and stops the watcher.
+ * <p>
+ * The table is indexed by the parent directory, ordered so that a directory is followed by all the directories
+ * inside it, so a deleted or rescanned tree is found without looking at the rest of the table.
+ *
+ * @author Ignatov Nikolay
+ */
+public class WalkWatcher implements AutoCloseable {
+    private static final long POLL_MILLIS = 200;
+    private static final byte[] UNREADABLE = new byte[0];
+    // orders paths by the root and then by the names, so the paths inside a directory follow it
+    private static final Comparator<Path> BY_NAMES = (a, b) -> {
+        final int roots = Objects.compare(a.getRoot(), b.getRoot(),
+                Comparator.nullsFirst(Comparator.comparing(Path::toString)));
+        if (roots != 0) {
+            return roots;
+        }
+        final int common = Math.min(a.getNameCount(), b.getNameCount());
+        for (int i = 0; i < common; i++) {
+            final int c = a.getName(i).compareTo(b.getName(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(a.getNameCount(), b.getNameCount());
+    };
+
+    private final FileHasher hasher;
+    private final Path output;
+    private final WatchService watchService;
+    private final Map<WatchKey, Watched> directories = new HashMap<>();
+    // files listed in the input by their directories, which are watched only for these files
+    private final Map<Path, Set<Path>> listed = new HashMap<>();
+    // hashes of the files by their directories
+    private final ConcurrentNavigableMap<Path, Map<Path, byte[]>> table = new ConcurrentSkipListMap<>(BY_NAMES);
+    private volatile boolean dumpRequested;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a watcher.
+     *
+     * @param hasher hasher of the files
+     * @param output file to dump the table to
+     * @throws WalkException when the watch service can`t be created
+     */
+    public WalkWatcher(final FileHasher hasher, final Path output) throws WalkException {
+        this.hasher = hasher;
+        this.output = output;
+        try {
+            watchService = output.getFileSystem().newWatchService();
+        } catch (IOException e) {
+            throw new WalkException("Can`t create a watch service. " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (WalkException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void run(String[] args) throws WalkException {
+        final Path[] paths = Walker.getPaths(args);
+        final List<Path> roots = new ArrayList<>();
+        try (BufferedReader bufferedReader = Files.newBufferedReader(paths[0])) {
+            String filename;
+            while ((filename = bufferedReader.readLine()) != null) {
+                try {
+                    roots.add(Paths.get(filename));
+                } catch (InvalidPathException e) {
+                    System.err.println("Invalid path " + filename);
+                }
+            }
+        } catch (IOException e) {
+            throw new WalkException("Some problems occurred while processing the input file. " + e.getMessage());
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during processing the input file" + e.getMessage());
+        }
+
+        try (WalkWatcher watcher = new WalkWatcher(FileHasher.fromProperties(), paths[1])) {
+            final Thread commands = new Thread(() -> {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
+                    String command;
+                    while ((command = reader.readLine()) != null) {
+                        switch (command.trim()) {
+                            case "dump" -> watcher.requestDump();
+                            case "stop" -> watcher.stop();
+                            default -> System.err.println("Unknown command " + command + ", expected dump or stop");
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Can`t read commands. " + e.getMessage());
+                }
+            });
+            commands.setDaemon(true);
+            commands.start();
+            watcher.watch(roots, Long.getLong("walk.dumpMillis", TimeUnit.MINUTES.toMillis(1)));
+        }
+    }
+
+    /**
+     * Hashes the roots and then rehashes changed files until {@link #stop()} is called.
+     *
+     * @param roots      files and directory trees to watch
+     * @param dumpMillis interval between writes of the table in milliseconds
+     * @throws WalkException when the table can`t be written
+     */
+    public void watch(final List<Path> roots, final long dumpMillis) throws WalkException {
+        for (final Path root : roots) {
+            if (Files.isDirectory(root)) {
+                add(root, true);
+            } else {
+                listed.computeIfAbsent(directoryOf(root), directory -> new HashSet<>()).add(root);
+                register(directoryOf(root), false);
+                hashAll(List.of(root));
+            }
+        }
+        dump();
+
+        long nextDump = System.currentTimeMillis() + dumpMillis;
+        try {
+            while (!stopped) {
+                final Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                // events are collected while they keep coming, so a file written in many steps is hashed once
+                while (key != null) {
+                    collect(key, changed);
+                    key = watchService.poll();
+                }
+                update(changed);
+                if (dumpRequested || System.currentTimeMillis() >= nextDump) {
+                    dumpRequested = false;
+                    dump();
+                    nextDump = System.currentTimeMillis() + dumpMillis;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed by another thread
+        }
+        dump();
+    }
+
+    /**
+     * Asks the watcher to write the table as soon as possible.
+     */
+    public void requestDump() {
+        dumpRequested = true;
+    }
+
+    /**
+     * Asks the watcher to write the table and stop.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Returns the current hash of the file.
+     *
+     * @param path watched file
+     * @return the hashes of all the algorithms, {@code null} if the file is not watched or can`t be read
+     */
+    public byte[] get(final Path path) {
+        final Map<Path, byte[]> entries = table.get(directoryOf(path));
+        final byte[] hash = entries == null ? null : entries.get(path);
+        return hash == UNREADABLE ? null : hash;
+    }
+
+    @Override
+    public void close() throws WalkException {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Can`t close the watch service. " + e.getMessage());
+        }
+        hasher.commit();
+    }
+
+    private void collect(final WatchKey key, final Set<Path> changed) {
+        final Watched watched = directories.get(key);
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (watched == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // some events are lost, the watched part of the directory is checked again
+                if (watched.tree) {
+                    changed.add(watched.directory);
+                } else {
+                    changed.addAll(listed.getOrDefault(watched.directory, Set.of()));
+                }
+                continue;
+            }
+            final Path path = watched.directory.resolve((Path) event.context());
+            if (watched.tree) {
+                // a modified directory reports the changes of its entries by its own key
+                if (event.kind() != StandardWatchEventKinds.ENTRY_MODIFY
+                        || !Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    changed.add(path);
+                }
+            } else if (listed.getOrDefault(watched.directory, Set.of()).contains(path)) {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    private void update(final Set<Path> changed) {
+        final List<Path> toHash = new ArrayList<>();
+        for (final Path path : changed) {
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                rescan(path);
+            } else if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                toHash.add(path);
+            } else {
+                remove(path);
+            }
+        }
+        hashAll(toHash);
+    }
+
+    private void add(final Path directory, final boolean root) {
+        final List<Path> found = new ArrayList<>();
+        collectFiles(directory, root, found);
+        hashAll(found);
+    }
+
+    /**
+     * Hashes the tree again and forgets the files of the tree which are not found any more.
+     */
+    private void rescan(final Path directory) {
+        final List<Path> found = new ArrayList<>();
+        collectFiles(directory, true, found);
+        final Set<Path> present = new HashSet<>(found);
+        for (final Path inside : subtree(directory)) {
+            table.get(inside).keySet().removeIf(file -> !present.contains(file));
+            table.remove(inside, Map.of());
+        }
+        hashAll(found);
+    }
+
+    private void remove(final Path path) {
+        final Map<Path, byte[]> entries = table.get(directoryOf(path));
+        if (entries != null) {
+            entries.remove(path);
+        }
+        // the path may have been a directory
+        for (final Path inside : subtree(path)) {
+            table.remove(inside);
+        }
+    }
+
+    /**
+     * Returns the directories of the table from the specified one and inside it.
+     */
+    private List<Path> subtree(final Path directory) {
+        final List<Path> directories = new ArrayList<>();
+        for (final Path key : table.tailMap(directory).keySet()) {
+            if (!key.startsWith(directory)) {
+                break;
+            }
+            directories.add(key);
+        }
+        return directories;
+    }
+
+    private static Path directoryOf(final Path path) {
+        return path.getParent() == null ? Paths.get("") : path.getParent();
+    }
+
+    private void collectFiles(final Path directory, final boolean root, final List<Path> found) {
+        register(directory, true);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (final Path child : stream) {
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    collectFiles(child, false, found);
+                } else {
+                    found.add(child);
+                }
+            }
+        } catch (IOException | SecurityException e) {
+            if (root) {
+                entries(directory).put(directory, UNREADABLE);
+            }
+        }
+    }
+
+    private void register(final Path directory, final boolean tree) {
+        try {
+            // events are resolved against the directory as it was listed, so the table keeps the input form of paths
+            final WatchKey key = directory.toAbsolutePath().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            final Watched previous = directories.get(key);
+            directories.put(key, new Watched(directory, tree || previous != null && previous.tree));
+        } catch (IOException | SecurityException e) {
+            System.err.println("Can`t watch " + directory + ". " + e.getMessage());
+        }
+    }
+
+    private void hashAll(final List<Path> paths) {
+        paths.parallelStream().forEach(path -> {
+            final byte[] hash = hasher.hash(path);
+            entries(path).put(path, hash == null ? UNREADABLE : hash.clone());
+        });
+    }
+
+    private Map<Path, byte[]> entries(final Path path) {
+        return table.computeIfAbsent(directoryOf(path), directory -> new ConcurrentHashMap<>());
+    }
+
+    private void dump() throws WalkException {
+        final List<Map.Entry<Path, byte[]>> entries = new ArrayList<>();
+        for (final Map<Path, byte[]> directory : table.values()) {
+            entries.addAll(directory.entrySet());
+        }
+        entries.sort(Comparator.comparing(entry -> entry.getKey().toString()));
+        final Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+                for (final Map.Entry<Path, byte[]> entry : entries) {
+                    hasher.write(writer, get(entry.getKey()));
+                    writer.write(' ');
+                    writer.write(entry.getKey().toString());
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new WalkException("Some problems occurred while writing the output file. " + e.getMessage());
+        } catch (SecurityException e) {
+            throw new WalkException("Access is denied during writing the output file" + e.getMessage());
+        }
+    }
+
+    /**
+     * Registered directory.
+     *
+     * @param directory path of the directory
+     * @param tree      whether all the entries of the directory are watched, or only the listed files
+     */
+    private record Watched(Path directory, boolean tree) {
+    }
+}
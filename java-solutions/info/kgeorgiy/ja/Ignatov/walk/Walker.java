@@ -5,42 +5,12 @@ import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 
 // :NOTE: не ловите RuntimeException
 // :NOTE: разделите ошибки для input и output
 // :NOTE: одно создание MessageDigest
 public class Walker {
-    private static byte[] calcSha1(Path input) throws WalkException {
-        try (InputStream inputStream = Files.newInputStream(input)) {
-            MessageDigest sha1;
-            try {
-                sha1 = MessageDigest.getInstance("SHA-1");
-            } catch (NoSuchAlgorithmException e) {
-                throw new WalkException("This algorithm of hashing is not available. " + e.getMessage());
-            }
-            byte[] block = new byte[4096];
-            int length;
-            while ((length = inputStream.read(block)) >= 0) {
-                sha1.update(block, 0, length);
-            }
-            return sha1.digest();
-        } catch (SecurityException e) {
-            throw new WalkException("Can`t access the file for hashing. " + e.getMessage());
-        } catch (UnsupportedOperationException e) {
-            throw new WalkException("Some unsupported option is specified while processing the files for hashing. "
-                    + e.getMessage());
-        } catch (IllegalArgumentException e) {
-            throw new WalkException("Invalid options are specified while processing the files for hashing. "
-                    + e.getMessage());
-        } catch (IOException e) {
-            return null;
-        }
-    }
-
-    public static void run(String[] args) throws WalkException {
-
+    /*package-private*/ static Path[] getPaths(String[] args) throws WalkException {
         if (args == null || args.length < 2) {
             throw new WalkException("Not enough arguments");
         }
@@ -64,29 +34,34 @@ public class Walker {
         } catch (SecurityException e) {
             throw new WalkException("Access is denied during the creation of the output path. " + e.getMessage());
         }
+        return new Path[]{input, output};
+    }
+
+    public static void run(String[] args) throws WalkException {
+        final FileHasher hasher = FileHasher.fromProperties();
+        run(args, hasher, FlushPolicy.fromProperties());
+        ManifestIndex.buildFromProperties(Paths.get(args[1]), hasher.getAlgorithms());
+    }
+
+    public static void run(String[] args, FileHasher hasher, FlushPolicy flushPolicy) throws WalkException {
+        final Path[] paths = getPaths(args);
+        final Path input = paths[0], output = paths[1];
 
         try (BufferedReader bufferedReader = Files.newBufferedReader(input)) {
             try (BufferedWriter bufferedWriter = Files.newBufferedWriter(output)) {
                 String filename;
                 while ((filename = bufferedReader.readLine()) != null) {
-                    Path currentFile;
-                    StringBuilder builder = new StringBuilder();
+                    byte[] hash;
                     try {
-                        currentFile = Paths.get(filename);
-                        byte[] bytes = calcSha1(currentFile);
-                        if (bytes != null) {
-                            for (byte b : bytes) {
-                                builder.append(String.format("%02x", b));
-                            }
-                        } else {
-                            throw new IOException("Can`t process the file and get a hash");
-                        }
-                    } catch (InvalidPathException | IOException e) {
-                        builder.append("0".repeat(40));
+                        hash = hasher.hash(Paths.get(filename));
+                    } catch (InvalidPathException e) {
+                        hash = null;
                     }
-                    bufferedWriter.write(builder + " " + filename);
+                    hasher.write(bufferedWriter, hash);
+                    bufferedWriter.write(' ');
+                    bufferedWriter.write(filename);
                     bufferedWriter.newLine();
-                    bufferedWriter.flush();
+                    flushPolicy.lineWritten(bufferedWriter);
                 }
             } catch (IOException e) {
                 throw new WalkException("Some problems occurred while processing the output or input file. " + e.getMessage());
@@ -98,5 +73,6 @@ public class Walker {
         } catch (SecurityException e) {
             throw new WalkException("Access is denied during processing the input file" + e.getMessage());
         }
+        hasher.commit();
     }
 }
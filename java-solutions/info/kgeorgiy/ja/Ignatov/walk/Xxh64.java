@@ -0,0 +1,112 @@
+package info.kgeorgiy.ja.Ignatov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming implementation of the non-cryptographic XXH64 hash function with zero seed.
+ *
+ * @author Ignatov Nikolay
+ */
+/*package-private*/ class Xxh64 implements Digest {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private final ByteBuffer tail = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+    private long v1, v2, v3, v4;
+    private long total;
+
+    /*package-private*/ Xxh64() {
+        reset();
+    }
+
+    @Override
+    public void update(final ByteBuffer buffer) {
+        final ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        total += buffer.remaining();
+        if (tail.position() > 0) {
+            while (tail.hasRemaining() && buffer.hasRemaining()) {
+                tail.put(buffer.get());
+            }
+            if (tail.hasRemaining()) {
+                buffer.order(order);
+                return;
+            }
+            stripe(tail, 0);
+            tail.clear();
+        }
+        int position = buffer.position();
+        for (final int limit = buffer.limit() - STRIPE; position <= limit; position += STRIPE) {
+            stripe(buffer, position);
+        }
+        buffer.position(position);
+        tail.put(buffer);
+        buffer.order(order);
+    }
+
+    @Override
+    public int digest(final byte[] out, final int offset) {
+        long h;
+        if (total >= STRIPE) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = P5;
+        }
+        h += total;
+
+        tail.flip();
+        while (tail.remaining() >= Long.BYTES) {
+            h ^= round(0, tail.getLong());
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+        }
+        if (tail.remaining() >= Integer.BYTES) {
+            h ^= (tail.getInt() & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+        }
+        while (tail.hasRemaining()) {
+            h ^= (tail.get() & 0xFFL) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        reset();
+        return HashAlgorithm.putBigEndian(h, Long.BYTES, out, offset);
+    }
+
+    private void reset() {
+        v1 = P1 + P2;
+        v2 = P2;
+        v3 = 0;
+        v4 = -P1;
+        total = 0;
+        tail.clear();
+    }
+
+    private void stripe(final ByteBuffer buffer, final int position) {
+        v1 = round(v1, buffer.getLong(position));
+        v2 = round(v2, buffer.getLong(position + 8));
+        v3 = round(v3, buffer.getLong(position + 16));
+        v4 = round(v4, buffer.getLong(position + 24));
+    }
+
+    private static long round(final long acc, final long input) {
+        return Long.rotateLeft(acc + input * P2, 31) * P1;
+    }
+
+    private static long merge(final long acc, final long value) {
+        return (acc ^ round(0, value)) * P1 + P4;
+    }
+}